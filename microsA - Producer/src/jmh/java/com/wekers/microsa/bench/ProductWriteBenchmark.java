@@ -0,0 +1,223 @@
+package com.wekers.microsa.bench;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escrita de produtos no PostgreSQL: pré-consulta + escrita (antes) contra um único statement (depois).
+ *
+ * create*: precheckThenInsert é o caminho antigo — SELECT de duplicidade e depois INSERT;
+ * insertOnConflict é o ProductJpaRepository.insertIfAbsent (ON CONFLICT DO NOTHING RETURNING).
+ * Os *Duplicate repetem um produto já gravado (409 para o cliente).
+ * update*: findById + SELECT de duplicidade + UPDATE contra SELECT ... FOR UPDATE + UPDATE.
+ *
+ * Cada operação é uma transação (commit incluso), como o @Transactional do ProductService.
+ * O banco é um PostgreSQL 16 embarcado com as migrations do microsA.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductWriteBenchmark {
+
+    private static final BigDecimal PRICE = new BigDecimal("19.90");
+    private static final String DESCRIPTION = "Descrição do produto de benchmark";
+
+    private static final String SELECT_DUPLICATE =
+            "SELECT id FROM product_entity WHERE content_hash = product_content_hash(?, ?)";
+    private static final String SELECT_DUPLICATE_OTHER =
+            "SELECT id FROM product_entity WHERE content_hash = product_content_hash(?, ?) AND id <> ?";
+    private static final String SELECT_BY_ID =
+            "SELECT id, name, description, price, content_hash, created_at, version FROM product_entity WHERE id = ?";
+    private static final String SELECT_FOR_UPDATE = SELECT_BY_ID + " FOR UPDATE";
+    private static final String INSERT = """
+            INSERT INTO product_entity (name, description, price)
+            VALUES (?, ?, ?)
+            RETURNING id, name, description, price, content_hash, created_at, version
+            """;
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO product_entity (name, description, price)
+            VALUES (?, ?, ?)
+            ON CONFLICT ON CONSTRAINT unique_content_hash DO NOTHING
+            RETURNING id, name, description, price, content_hash, created_at, version
+            """;
+    private static final String UPDATE = """
+            UPDATE product_entity SET name = ?, version = version + 1
+            WHERE id = ? AND version = ?
+            """;
+
+    private EmbeddedPostgres postgres;
+    private Connection connection;
+    private long sequence;
+    private String existingName;
+    private UUID updateTarget;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        postgres = EmbeddedPostgres.builder()
+                .setLocaleConfig("encoding", "UTF8")
+                .start();
+        Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        connection = postgres.getPostgresDatabase().getConnection();
+        connection.setAutoCommit(false);
+
+        existingName = "Produto existente";
+        insert(INSERT, existingName);
+        updateTarget = insert(INSERT, "Produto atualizado");
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        postgres.close();
+    }
+
+    // ============================================================
+    // CREATE — produto novo
+    // ============================================================
+
+    @Benchmark
+    public UUID createPrecheckThenInsert() throws SQLException {
+        String name = nextName();
+        if (exists(name)) {
+            throw new IllegalStateException("duplicado inesperado: " + name);
+        }
+        UUID id = insert(INSERT, name);
+        connection.commit();
+        return id;
+    }
+
+    @Benchmark
+    public UUID createInsertOnConflict() throws SQLException {
+        UUID id = insert(INSERT_IF_ABSENT, nextName());
+        connection.commit();
+        return id;
+    }
+
+    // ============================================================
+    // CREATE — produto já existente
+    // ============================================================
+
+    @Benchmark
+    public boolean createDuplicatePrecheck() throws SQLException {
+        boolean duplicate = exists(existingName);
+        connection.commit();
+        return duplicate;
+    }
+
+    @Benchmark
+    public UUID createDuplicateInsertOnConflict() throws SQLException {
+        UUID id = insert(INSERT_IF_ABSENT, existingName);
+        connection.commit();
+        return id;
+    }
+
+    // ============================================================
+    // UPDATE — troca de nome
+    // ============================================================
+
+    @Benchmark
+    public int updatePrecheck() throws SQLException {
+        long version = readVersion(SELECT_BY_ID);
+        String name = nextName();
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_DUPLICATE_OTHER)) {
+            ps.setString(1, name);
+            ps.setString(2, DESCRIPTION);
+            ps.setObject(3, updateTarget);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    throw new IllegalStateException("duplicado inesperado: " + name);
+                }
+            }
+        }
+        int updated = update(name, version);
+        connection.commit();
+        return updated;
+    }
+
+    @Benchmark
+    public int updateLocked() throws SQLException {
+        long version = readVersion(SELECT_FOR_UPDATE);
+        int updated = update(nextName(), version);
+        connection.commit();
+        return updated;
+    }
+
+    // ============================================================
+    // JDBC
+    // ============================================================
+
+    private String nextName() {
+        return "Produto " + sequence++;
+    }
+
+    private boolean exists(String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_DUPLICATE)) {
+            ps.setString(1, name);
+            ps.setString(2, DESCRIPTION);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private UUID insert(String sql, String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, name);
+            ps.setString(2, DESCRIPTION);
+            ps.setBigDecimal(3, PRICE);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getObject(1, UUID.class) : null;
+            }
+        }
+    }
+
+    private long readVersion(String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setObject(1, updateTarget);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("produto não encontrado: " + updateTarget);
+                }
+                return rs.getLong("version");
+            }
+        }
+    }
+
+    private int update(String name, long version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(UPDATE)) {
+            ps.setString(1, name);
+            ps.setObject(2, updateTarget);
+            ps.setLong(3, version);
+            return ps.executeUpdate();
+        }
+    }
+}
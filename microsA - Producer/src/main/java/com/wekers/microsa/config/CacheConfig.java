@@ -0,0 +1,30 @@
+package com.wekers.microsa.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+
+    @Bean
+    public CacheManager cacheManager(ProductCacheProperties properties) {
+        CaffeineCacheManager manager = new CaffeineCacheManager();
+        manager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())   // limite por tamanho
+                .expireAfterWrite(properties.getTtl())      // e por tempo
+                .recordStats());                            // hit/miss/eviction no actuator
+        // caches declarados no startup => métricas registradas pelo actuator
+        manager.setCacheNames(List.of(PRODUCTS));
+        manager.setAllowNullValues(false);
+        return manager;
+    }
+}
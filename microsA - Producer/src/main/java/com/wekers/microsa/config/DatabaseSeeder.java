@@ -1,18 +1,22 @@
 package com.wekers.microsa.config;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wekers.microsa.entity.ProductEntity;
 import com.wekers.microsa.repository.ProductJpaRepository;
-import com.wekers.microsa.service.ProductProducer;
+import com.wekers.microsa.service.OutboxService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -21,9 +25,12 @@ import java.util.List;
 public class DatabaseSeeder {
 
     private final ProductJpaRepository repository;
-    private final ProductProducer producer;
+    private final OutboxService outbox;
     private final ObjectMapper mapper;
     private final RabbitQueueAvailable queueAvailable;
+    private final SeedProperties seedProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
 
     @Bean
     public ApplicationRunner runSeeder() {
@@ -44,36 +51,83 @@ public class DatabaseSeeder {
                 return; // PARA TUDO
             }
 
-            // Carrega arquivo JSON
-            InputStream is = getClass().getResourceAsStream("/seed/products-seed.json");
+            // Carrega arquivo JSON (em streaming: nunca mais que um chunk em memória)
+            InputStream is = getClass().getResourceAsStream(seedProperties.getResource());
             if (is == null) {
-                throw new RuntimeException("seed/products-seed.json NOT FOUND!");
+                throw new RuntimeException(seedProperties.getResource() + " NOT FOUND!");
             }
 
-            List<ProductSeedDTO> seedData =
-                    mapper.readValue(is, new TypeReference<List<ProductSeedDTO>>() {});
+            SeedStats stats = new SeedStats();
 
-            int eventsSentCount = 0;
+            try (JsonParser parser = mapper.getFactory().createParser(is)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalStateException("Seed file must be a JSON array");
+                }
 
-            for (ProductSeedDTO dto : seedData) {
+                List<ProductSeedDTO> chunk = new ArrayList<>(seedProperties.getChunkSize());
+
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    chunk.add(mapper.readValue(parser, ProductSeedDTO.class));
+
+                    if (chunk.size() == seedProperties.getChunkSize()) {
+                        seedChunk(chunk, stats);
+                        chunk = new ArrayList<>(seedProperties.getChunkSize());
+                    }
+                }
+
+                if (!chunk.isEmpty()) {
+                    seedChunk(chunk, stats);
+                }
+            }
+
+            log.info("✅ SEED completed with {} products inserted and their events queued in outbox in {} ms ({} products/s).",
+                    stats.inserted, stats.elapsedMs(), stats.rate());
+        };
+    }
+
+    /**
+     * Persiste o chunk e grava os eventos CREATED no outbox na mesma transação, como o createBatch:
+     * produto sem evento (ou evento sem produto) não acontece nem se o broker estiver fora.
+     * A publicação fica com o OutboxRelay.
+     */
+    private void seedChunk(List<ProductSeedDTO> chunk, SeedStats stats) {
+
+        // saveAll + flush/clear => JDBC batch (produtos e outbox), contexto de persistência limpo
+        Integer inserted = transactionTemplate.execute(status -> {
+            List<ProductEntity> entities = new ArrayList<>(chunk.size());
+            for (ProductSeedDTO dto : chunk) {
                 ProductEntity entity = new ProductEntity();
                 entity.setName(dto.name());
                 entity.setDescription(dto.description());
                 entity.setPrice(dto.price());
+                entities.add(entity);
+            }
+            repository.assignContentHashes(entities); // chave calculada pelo banco, o insert em lote não a lê
+            List<ProductEntity> result = repository.saveAll(entities);
+            outbox.enqueueCreatedAll(result);
+            entityManager.flush();
+            entityManager.clear();
+            return result.size();
+        });
+
+        stats.inserted += inserted;
+        log.info("🌱 SEED progress: {} products inserted and queued in outbox ({} products/s)",
+                stats.inserted, stats.rate());
+    }
 
-                // 1) Salva no Postgres (SÓ SE routing key existe)
-                ProductEntity saved = repository.save(entity);
+    private static class SeedStats {
+        private final long startNanos = System.nanoTime();
+        private long inserted;
 
-                // 2) Dispara evento (SÓ SE routing key existe)
-                producer.sendCreated(saved);
-                eventsSentCount++;
-            }
+        long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
 
-            log.info("✅ SEED completed with {} products inserted! {} events sent to RabbitMQ.",
-                    seedData.size(), eventsSentCount);
-        };
+        long rate() {
+            return inserted * 1000 / Math.max(1, elapsedMs());
+        }
     }
 
     // DTO interno para leitura do JSON
     public record ProductSeedDTO(String name, String description, BigDecimal price) {}
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.wekers.microsa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.outbox")
+public class OutboxProperties {
+
+    private boolean enabled = true;
+    private int batchSize = 500;
+    private long pollIntervalMs = 200;
+    private long confirmTimeoutMs = 20000;
+    private long claimLeaseMs = 60000;   // lote em publicação fica fora da varredura das outras instâncias (> confirmTimeoutMs)
+    private long coalesceWindowMs = 250; // UPDATEDs do mesmo produto dentro da janela viram um só (0 = desliga)
+    private int maxAttempts = 20;        // recusas do broker (NACK/returned) até a linha ser estacionada (parked_at)
+    private long outageBackoffMs = 1000;        // broker fora (conexão/timeout do confirm): pausa do relay, dobra a cada lote
+    private long outageBackoffMaxMs = 30000;
+    private long parkedReleaseAfterMs = 600000; // estacionadas voltam à varredura depois disso (0 = só via POST /outbox/parked/release)
+    private long parkedReleaseCheckMs = 60000;
+}
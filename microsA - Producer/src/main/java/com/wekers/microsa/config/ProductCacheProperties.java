@@ -0,0 +1,19 @@
+package com.wekers.microsa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.cache.products")
+public class ProductCacheProperties {
+
+    private long maximumSize = 10_000;
+    private Duration ttl = Duration.ofMinutes(10);
+    private Duration secondEvictDelay = Duration.ofMillis(500); // invalidação repetida após o commit
+}
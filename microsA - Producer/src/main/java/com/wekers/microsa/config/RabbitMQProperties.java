@@ -14,6 +14,9 @@ public class RabbitMQProperties {
 
     private Exchanges exchanges = new Exchanges();
     private RoutingKeys routingKeys = new RoutingKeys();
+    private Publisher publisher = new Publisher();
+    private Encoding encoding = new Encoding();
+    private Partitions partitions = new Partitions();
 
 
     @Getter
@@ -31,5 +34,36 @@ public class RabbitMQProperties {
         private String updated;
     }
 
+    @Getter
+    @Setter
+    public static class Publisher {
+        private int windowSize = 1000;       // mensagens aguardando confirm ao mesmo tempo
+        private int maxAttempts = 3;         // publicações por mensagem (NACK/returned republica)
+        private long confirmTimeoutMs = 5000;
+        private long retryBackoffMs = 200;
+    }
+
+    @Getter
+    @Setter
+    public static class Encoding {
+        private String format = "json";            // json | smile
+        private int compressThresholdBytes = 2048; // corpo maior que isso vai com gzip (0 = nunca)
+    }
+
+    @Getter
+    @Setter
+    public static class Partitions {
+        private boolean enabled = false;
+        private int count = 8;                              // precisa ser o mesmo no microsB
+        private String routingKeyPrefix = "products.partition";
+
+        // products.partition.{n}.{created|updated|deleted}
+        public String routingKey(int partition, String eventType) {
+            return routingKeyPrefix + "." + partition + "." + eventType;
+        }
 
+        public String queueName(int partition) {
+            return routingKeyPrefix + "." + partition + ".queue";
+        }
+    }
 }
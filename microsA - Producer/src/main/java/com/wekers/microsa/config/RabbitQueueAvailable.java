@@ -31,7 +31,9 @@ public class RabbitQueueAvailable {
         RabbitAdmin admin = new RabbitAdmin(connectionFactory);
 
         try {
-            String microserviceBQueueName = properties.getRoutingKeys().getCreated() + ".queue";
+            String microserviceBQueueName = properties.getPartitions().isEnabled()
+                    ? properties.getPartitions().queueName(0)
+                    : properties.getRoutingKeys().getCreated() + ".queue";
 
             Properties queueProps = admin.getQueueProperties(microserviceBQueueName);
 
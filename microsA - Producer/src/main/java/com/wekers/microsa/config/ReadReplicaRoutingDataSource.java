@@ -0,0 +1,64 @@
+package com.wekers.microsa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Transações readOnly vão para a réplica enquanto ela estiver saudável e dentro do atraso
+ * tolerado; todo o resto (escritas, outbox, Flyway, leituras sem transação) fica no primário.
+ * Falha ao obter conexão da réplica também cai para o primário, sem esperar a próxima verificação.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaHealthMonitor health;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaHealthMonitor health) {
+        this.primary = primary;
+        this.replica = replica;
+        this.health = health;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && health.isUsable()
+                ? Target.REPLICA
+                : Target.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() == Target.REPLICA) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                health.markDown(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (determineCurrentLookupKey() == Target.REPLICA) {
+            try {
+                return replica.getConnection(username, password);
+            } catch (SQLException e) {
+                health.markDown(e);
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+}
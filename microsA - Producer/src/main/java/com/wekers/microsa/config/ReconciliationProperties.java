@@ -0,0 +1,18 @@
+package com.wekers.microsa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.reconciliation")
+public class ReconciliationProperties {
+
+    private String elasticsearchUrl = "http://localhost:9200";
+    private String index = "products_write";
+    private int slices = 4;       // fatias do espaço de UUIDs comparadas em paralelo
+    private int pageSize = 1000;  // linhas do Postgres / hits do Elasticsearch por página
+}
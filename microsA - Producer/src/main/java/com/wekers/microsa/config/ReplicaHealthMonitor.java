@@ -0,0 +1,94 @@
+package com.wekers.microsa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Verifica periodicamente se a réplica responde e quanto está atrasada em relação ao primário.
+ * O resultado é só lido no roteamento (volatile), sem consulta extra por requisição.
+ */
+@Slf4j
+public class ReplicaHealthMonitor implements HealthIndicator {
+
+    // Sem WAL pendente de replay o atraso é zero, mesmo que o primário esteja ocioso há muito tempo
+    // (pg_last_xact_replay_timestamp sozinho "envelhece" sem escritas). Fora de recovery => 0.
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() THEN 0
+                     WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                   END::bigint
+            """;
+
+    private final DataSource replica;
+    private final ReplicaProperties properties;
+
+    private volatile boolean reachable = false; // até a primeira verificação, leituras no primário
+    private volatile long lagMs = -1;
+    private volatile String lastError;
+
+    public ReplicaHealthMonitor(DataSource replica, ReplicaProperties properties) {
+        this.replica = replica;
+        this.properties = properties;
+    }
+
+    public boolean isUsable() {
+        return reachable && lagMs <= properties.getMaxLagMs();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.check-interval-ms:2000}")
+    public void check() {
+        boolean wasUsable = isUsable();
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+            rs.next();
+            lagMs = rs.getLong(1);
+            reachable = true;
+            lastError = null;
+        } catch (Exception e) {
+            reachable = false;
+            lastError = e.getMessage();
+        }
+        logTransition(wasUsable);
+    }
+
+    // Falha ao abrir conexão durante uma leitura: tira a réplica de rotação até a próxima verificação
+    void markDown(Exception e) {
+        boolean wasUsable = isUsable();
+        reachable = false;
+        lastError = e.getMessage();
+        logTransition(wasUsable);
+    }
+
+    private void logTransition(boolean wasUsable) {
+        boolean usable = isUsable();
+        if (wasUsable && !usable) {
+            log.warn("⚠️ Read replica out of rotation (lag={} ms, max={} ms, error={}) — reads on primary",
+                    lagMs, properties.getMaxLagMs(), lastError);
+        } else if (!wasUsable && usable) {
+            log.info("✅ Read replica back in rotation (lag={} ms)", lagMs);
+        }
+    }
+
+    @Override
+    public Health health() {
+        // réplica fora não derruba o health da aplicação: o primário segue atendendo as leituras
+        Health.Builder builder = Health.status(reachable ? Status.UP : Status.UNKNOWN);
+        builder.withDetail("lagMs", lagMs)
+                .withDetail("maxLagMs", properties.getMaxLagMs())
+                .withDetail("routingReads", isUsable());
+        if (lastError != null) {
+            builder.withDetail("error", lastError);
+        }
+        return builder.build();
+    }
+}
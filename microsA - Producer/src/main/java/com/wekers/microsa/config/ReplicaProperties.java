@@ -0,0 +1,22 @@
+package com.wekers.microsa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.datasource.replica")
+public class ReplicaProperties {
+
+    private boolean enabled = false;       // false => tudo no primário (DataSource padrão do Boot)
+    private String url;
+    private String username;
+    private String password;
+    private int maximumPoolSize = 10;
+    private long connectionTimeoutMs = 1000; // curto: réplica fora do ar cai logo para o primário
+    private long maxLagMs = 5000;          // acima disso as leituras voltam para o primário
+    private long checkIntervalMs = 2000;   // intervalo da verificação de saúde/atraso
+}
@@ -0,0 +1,16 @@
+package com.wekers.microsa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.seed")
+public class SeedProperties {
+
+    private String resource = "/seed/products-seed.json";
+    private int chunkSize = 1000;
+}
@@ -0,0 +1,27 @@
+package com.wekers.microsa.controller;
+
+import com.wekers.microsa.service.OutboxRelay;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/outbox")
+@RequiredArgsConstructor
+public class OutboxController {
+
+    private final OutboxRelay relay;
+
+    // ============================================================
+    // LIBERAR eventos estacionados (voltam para a varredura do relay)
+    // ============================================================
+    @PostMapping("/parked/release")
+    public ResponseEntity<Map<String, Integer>> releaseParked() {
+        return ResponseEntity.ok(Map.of("released", relay.releaseParked(Instant.now())));
+    }
+}
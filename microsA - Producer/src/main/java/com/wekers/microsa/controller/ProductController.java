@@ -1,14 +1,19 @@
 package com.wekers.microsa.controller;
 
 
+import com.wekers.microsa.dto.ProductBatchResponse;
+import com.wekers.microsa.dto.ProductPageResponse;
 import com.wekers.microsa.dto.ProductRequest;
 import com.wekers.microsa.dto.ProductResponse;
 import com.wekers.microsa.service.ProductService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -31,6 +36,18 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    // ============================================================
+    // CREATE (lote)
+    // ============================================================
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchResponse> createBatch(
+            @RequestBody List<@NotNull(message = "Item do lote não pode ser nulo") @Valid ProductRequest> requests) {
+        ProductBatchResponse result = service.createBatch(requests);
+        // 201 se algo foi criado; 200 se o lote inteiro era duplicado
+        HttpStatus status = result.created() > 0 ? HttpStatus.CREATED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(result);
+    }
+
     // ============================================================
     // READ (by id)
     // ============================================================
@@ -74,6 +91,25 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // ============================================================
+    // LISTAR (streaming NDJSON — Accept: application/x-ndjson)
+    // ============================================================
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(service::streamAll);
+    }
+
+    // ============================================================
+    // LISTAR (paginado por cursor)
+    // ============================================================
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageResponse> listPage(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(service.listPage(cursor, limit));
+    }
+
     // ============================================================
     // HEALTH
     // ============================================================
@@ -0,0 +1,42 @@
+package com.wekers.microsa.controller;
+
+import com.wekers.microsa.dto.ReconciliationStatus;
+import com.wekers.microsa.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/products/reconcile")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private static final URI STATUS = URI.create("/products/reconcile/status");
+
+    private final ReconciliationService service;
+
+    // ============================================================
+    // RECONCILIAR Postgres x índice (dryRun=true só conta as diferenças)
+    // Roda em background: 202 + Location do status; 409 se já houver uma em andamento
+    // ============================================================
+    @PostMapping
+    public ResponseEntity<ReconciliationStatus> reconcile(@RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.accepted()
+                .location(STATUS)
+                .body(service.start(dryRun));
+    }
+
+    // ============================================================
+    // STATUS / RELATÓRIO da última reconciliação
+    // ============================================================
+    @GetMapping("/status")
+    public ResponseEntity<ReconciliationStatus> status() {
+        return ResponseEntity.of(service.status());
+    }
+}
@@ -0,0 +1,23 @@
+package com.wekers.microsa.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductBatchItemResult(
+        int index,
+        Status status,
+        UUID id,
+        String error
+) {
+    public enum Status { CREATED, DUPLICATE }
+
+    public static ProductBatchItemResult created(int index, UUID id) {
+        return new ProductBatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static ProductBatchItemResult duplicate(int index) {
+        return new ProductBatchItemResult(index, Status.DUPLICATE, null, "Produto já existe (name+description)");
+    }
+}
@@ -0,0 +1,11 @@
+package com.wekers.microsa.dto;
+
+import java.util.List;
+
+public record ProductBatchResponse(
+        int received,
+        int created,
+        int duplicates,
+        List<ProductBatchItemResult> items
+) {
+}
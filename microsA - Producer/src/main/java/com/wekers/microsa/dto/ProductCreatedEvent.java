@@ -7,5 +7,7 @@ public record ProductCreatedEvent(
         UUID id,
         String name,
         String description,
-        BigDecimal price
+        BigDecimal price,
+        UUID contentHash,   // chave de duplicidade (uniqueKey no Elasticsearch)
+        long version
 ) {}
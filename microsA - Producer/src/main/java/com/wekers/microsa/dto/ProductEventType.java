@@ -0,0 +1,28 @@
+package com.wekers.microsa.dto;
+
+import com.wekers.microsa.config.RabbitMQProperties;
+
+public enum ProductEventType {
+
+    CREATED(ProductCreatedEvent.class),
+    UPDATED(ProductUpdatedEvent.class),
+    DELETED(ProductDeletedEvent.class);
+
+    private final Class<?> eventClass;
+
+    ProductEventType(Class<?> eventClass) {
+        this.eventClass = eventClass;
+    }
+
+    public Class<?> eventClass() {
+        return eventClass;
+    }
+
+    public String routingKey(RabbitMQProperties.RoutingKeys routingKeys) {
+        return switch (this) {
+            case CREATED -> routingKeys.getCreated();
+            case UPDATED -> routingKeys.getUpdated();
+            case DELETED -> routingKeys.getDeleted();
+        };
+    }
+}
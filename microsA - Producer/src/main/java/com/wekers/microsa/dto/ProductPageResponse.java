@@ -0,0 +1,9 @@
+package com.wekers.microsa.dto;
+
+import java.util.List;
+
+public record ProductPageResponse(
+        List<ProductResponse> items,
+        String nextCursor // null quando não há mais páginas
+) {
+}
@@ -1,11 +1,22 @@
 package com.wekers.microsa.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.math.BigDecimal;
 import java.util.UUID;
 
+// Delta: campos nulos não mudaram e nem vão para o payload (evento completo = todos preenchidos)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record ProductUpdatedEvent(
         UUID id,
         String name,
         String description,
-        BigDecimal price
-) {}
+        BigDecimal price,
+        UUID contentHash,   // chave de duplicidade (uniqueKey no Elasticsearch)
+        long version,
+        Long baseVersion    // delta: versão sobre a qual foi calculado (null no evento completo)
+) {
+    public ProductUpdatedEvent withContentHash(UUID contentHash) {
+        return new ProductUpdatedEvent(id, name, description, price, contentHash, version, baseVersion);
+    }
+}
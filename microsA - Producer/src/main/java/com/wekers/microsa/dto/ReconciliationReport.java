@@ -0,0 +1,14 @@
+package com.wekers.microsa.dto;
+
+public record ReconciliationReport(
+        boolean dryRun,
+        int slices,
+        long postgresRows,
+        long indexedDocs,
+        long missing,   // no Postgres, fora do índice => CREATED
+        long changed,   // conteúdo divergente => UPDATED
+        long extra,     // no índice, fora do Postgres => DELETED
+        long elapsedMs,
+        long rowsPerSecond
+) {
+}
@@ -0,0 +1,28 @@
+package com.wekers.microsa.dto;
+
+import java.time.Instant;
+
+// Estado da última reconciliação disparada (report só quando COMPLETED, error só quando FAILED)
+public record ReconciliationStatus(
+        State state,
+        boolean dryRun,
+        Instant startedAt,
+        Instant finishedAt,
+        ReconciliationReport report,
+        String error
+) {
+
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    public static ReconciliationStatus running(boolean dryRun) {
+        return new ReconciliationStatus(State.RUNNING, dryRun, Instant.now(), null, null, null);
+    }
+
+    public ReconciliationStatus completed(ReconciliationReport report) {
+        return new ReconciliationStatus(State.COMPLETED, dryRun, startedAt, Instant.now(), report, null);
+    }
+
+    public ReconciliationStatus failed(Throwable cause) {
+        return new ReconciliationStatus(State.FAILED, dryRun, startedAt, Instant.now(), null, String.valueOf(cause));
+    }
+}
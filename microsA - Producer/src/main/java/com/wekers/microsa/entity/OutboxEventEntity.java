@@ -0,0 +1,122 @@
+package com.wekers.microsa.entity;
+
+import com.wekers.microsa.dto.ProductEventType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "product_outbox")
+public class OutboxEventEntity {
+
+    // Sequence com allocationSize = INCREMENT BY da migration: permite JDBC batch no insert
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_outbox_seq")
+    @SequenceGenerator(name = "product_outbox_seq", sequenceName = "product_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private UUID aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private ProductEventType eventType;
+
+    @Column(nullable = false)
+    private String payload;
+
+    // versão do produto no evento: ordem entre eventos do mesmo produto (o id não é causal)
+    private Long version;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // preenchido quando as tentativas se esgotam: o relay não trava mais a linha
+    @Column(name = "parked_at")
+    private Instant parkedAt;
+
+    public OutboxEventEntity() {
+    }
+
+    public OutboxEventEntity(UUID aggregateId, ProductEventType eventType, long version, String payload) {
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.version = version;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getAggregateId() {
+        return aggregateId;
+    }
+
+    public ProductEventType getEventType() {
+        return eventType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getParkedAt() {
+        return parkedAt;
+    }
+
+    // Coalescência: o delta publicado passa a incluir os campos dos UPDATEDs descartados
+    public void replacePayload(String payload) {
+        this.payload = payload;
+    }
+
+    // Recusa do broker (NACK/returned): conta tentativa; true se esgotou e a linha foi estacionada
+    public boolean markFailed(String error, int maxAttempts) {
+        this.attempts++;
+        this.lastError = error;
+        if (attempts >= maxAttempts) {
+            this.parkedAt = Instant.now();
+            return true;
+        }
+        return false;
+    }
+
+    // Broker indisponível: a mensagem não tem culpa, não conta tentativa
+    public void markUnavailable(String error) {
+        this.lastError = error;
+    }
+}
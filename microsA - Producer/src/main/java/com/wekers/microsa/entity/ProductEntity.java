@@ -1,11 +1,17 @@
 package com.wekers.microsa.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -18,6 +24,19 @@ public class ProductEntity {
     private BigDecimal price;
     private String description;
 
+    // Coluna gerada pelo banco (product_content_hash(name, description)), única definição da chave.
+    // No UPDATE vem pelo RETURNING; no insert em lote é atribuída antes (ler de volta desligaria o batch)
+    @Generated(event = EventType.UPDATE)
+    @Column(name = "content_hash", insertable = false, updatable = false)
+    private UUID contentHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    // Incrementada a cada escrita; vira a versão externa do documento no Elasticsearch
+    @Version
+    private long version;
+
     public ProductEntity() {
     }
 
@@ -27,6 +46,13 @@ public class ProductEntity {
         this.description = description;
     }
 
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+
     // Getters and Setters
 
     public UUID getId() {
@@ -61,4 +87,21 @@ public class ProductEntity {
         this.description = description;
     }
 
+    public UUID getContentHash() {
+        return contentHash;
+    }
+
+    // Valor calculado pelo próprio banco (ProductJpaRepository.contentHashesOf); a coluna não é gravada
+    public void assignContentHash(UUID contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
 }
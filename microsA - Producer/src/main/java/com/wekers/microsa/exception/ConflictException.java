@@ -0,0 +1,9 @@
+package com.wekers.microsa.exception;
+
+// Requisição válida que colidiu com o estado atual (409): o cliente pode reenviar
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -5,10 +5,14 @@ import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.method.ParameterErrors;
+import org.springframework.validation.method.ParameterValidationResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -30,9 +34,9 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
-    @ExceptionHandler(IllegalStateException.class)
-    public ResponseEntity<Map<String, Object>> handleIllegalState(IllegalStateException ex) {
-        log.error("Estado inválido: {}", ex.getMessage());
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleConflict(ConflictException ex) {
+        log.warn("Conflito: {}", ex.getMessage());
         return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of("error", ex.getMessage()));
     }
@@ -54,6 +58,31 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    // List<@Valid ProductRequest>: a validação de método do Spring 6.2 não gera MethodArgumentNotValidException;
+    // cada item inválido vira "[índice].campo"; item nulo vira "[índice]"
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<Map<String, Object>> handleMethodValidation(HandlerMethodValidationException ex) {
+        Map<String, String> fieldErrors = new LinkedHashMap<>();
+        for (ParameterValidationResult result : ex.getParameterValidationResults()) {
+            String prefix = result.getContainerIndex() != null
+                    ? "[" + result.getContainerIndex() + "]"
+                    : String.valueOf(result.getMethodParameter().getParameterName());
+            if (result instanceof ParameterErrors errors) {
+                errors.getFieldErrors().forEach(fe ->
+                        fieldErrors.putIfAbsent(prefix + "." + fe.getField(), fe.getDefaultMessage()));
+            } else {
+                result.getResolvableErrors().forEach(error ->
+                        fieldErrors.putIfAbsent(prefix, error.getDefaultMessage()));
+            }
+        }
+
+        return ResponseEntity.badRequest()
+                .body(Map.of(
+                        "error", "Dados inválidos",
+                        "fields", fieldErrors
+                ));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGeneric(Exception ex) {
         log.error("Erro inesperado", ex);
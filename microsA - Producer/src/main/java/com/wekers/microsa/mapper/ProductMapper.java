@@ -1,10 +1,18 @@
 package com.wekers.microsa.mapper;
 
+import com.wekers.microsa.dto.ProductCreatedEvent;
+import com.wekers.microsa.dto.ProductDeletedEvent;
 import com.wekers.microsa.dto.ProductRequest;
+import com.wekers.microsa.dto.ProductUpdatedEvent;
 import com.wekers.microsa.entity.ProductEntity;
 import com.wekers.microsa.dto.ProductResponse;
+import com.wekers.microsa.repository.ProductJpaRepository.ProductView;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.UUID;
+
 @Component
 public class ProductMapper {
 
@@ -30,4 +38,64 @@ public class ProductMapper {
                 entity.getPrice()
         );
     }
+
+    public ProductResponse toResponse(ProductView view) {
+        return new ProductResponse(
+                view.getId(),
+                view.getName(),
+                view.getDescription(),
+                view.getPrice()
+        );
+    }
+
+    public ProductCreatedEvent toCreatedEvent(ProductEntity entity) {
+        return new ProductCreatedEvent(
+                entity.getId(),
+                entity.getName(),
+                entity.getDescription(),
+                entity.getPrice(),
+                entity.getContentHash(),
+                entity.getVersion()
+        );
+    }
+
+    public ProductUpdatedEvent toUpdatedEvent(ProductEntity entity) {
+        return new ProductUpdatedEvent(
+                entity.getId(),
+                entity.getName(),
+                entity.getDescription(),
+                entity.getPrice(),
+                entity.getContentHash(),
+                entity.getVersion(),
+                null
+        );
+    }
+
+    /**
+     * Evento delta: só os campos que a requisição realmente altera (null = inalterado).
+     * Retorna null quando nada muda. A versão é a que o flush vai gravar (@Version + 1); a base é
+     * a versão atual — o consumidor só aplica o delta sobre um documento exatamente nela.
+     * O contentHash novo (nome ou descrição mudou) só existe depois do UPDATE: é gerado pelo banco,
+     * e quem faz o flush o acrescenta com {@link ProductUpdatedEvent#withContentHash}.
+     */
+    public ProductUpdatedEvent toUpdatedDelta(ProductEntity current, ProductRequest request) {
+        String name = Objects.equals(current.getName(), request.name()) ? null : request.name();
+        String description = Objects.equals(current.getDescription(), request.description()) ? null : request.description();
+        BigDecimal price = current.getPrice().compareTo(request.price()) == 0 ? null : request.price();
+
+        if (name == null && description == null && price == null) {
+            return null;
+        }
+        return new ProductUpdatedEvent(current.getId(), name, description, price, null,
+                current.getVersion() + 1, current.getVersion());
+    }
+
+    public ProductDeletedEvent toDeletedEvent(ProductEntity entity) {
+        return new ProductDeletedEvent(
+                entity.getId(),
+                entity.getName(),
+                entity.getDescription(),
+                entity.getVersion() + 1 // a remoção é a próxima versão do produto
+        );
+    }
 }
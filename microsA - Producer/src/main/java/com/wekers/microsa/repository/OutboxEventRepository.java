@@ -0,0 +1,54 @@
+package com.wekers.microsa.repository;
+
+import com.wekers.microsa.entity.OutboxEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    // Trava o próximo lote; outras instâncias do relay pulam as linhas já travadas ou reservadas
+    // por um lote ainda em publicação (claimed_until).
+    // Linhas estacionadas ficam fora até serem liberadas, e seguram os eventos seguintes
+    // do mesmo produto (um UPDATED não passa na frente do CREATED estacionado)
+    @Query(value = """
+            SELECT * FROM product_outbox o
+            WHERE o.parked_at IS NULL
+              AND (o.claimed_until IS NULL OR o.claimed_until < now())
+              AND NOT EXISTS (SELECT 1 FROM product_outbox p
+                              WHERE p.aggregate_id = o.aggregate_id AND p.parked_at IS NOT NULL)
+            ORDER BY o.id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEventEntity> lockNextBatch(@Param("limit") int limit);
+
+    // Reserva o lote travado até o fim da publicação: a trava de linha acaba com a transação curta
+    @Modifying
+    @Query(value = "UPDATE product_outbox SET claimed_until = :until WHERE id IN (:ids)", nativeQuery = true)
+    int claim(@Param("ids") List<Long> ids, @Param("until") Instant until);
+
+    // Devolve à varredura as linhas do lote que não foram removidas
+    @Modifying
+    @Query(value = "UPDATE product_outbox SET claimed_until = NULL WHERE id IN (:ids)", nativeQuery = true)
+    int releaseClaims(@Param("ids") List<Long> ids);
+
+    // Devolve à varredura as linhas estacionadas até parkedBefore, com as tentativas zeradas
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE product_outbox
+            SET parked_at = NULL, attempts = 0
+            WHERE parked_at <= :parkedBefore
+            """, nativeQuery = true)
+    int releaseParked(@Param("parkedBefore") Instant parkedBefore);
+
+    long countByParkedAtIsNotNull();
+}
@@ -1,20 +1,132 @@
 package com.wekers.microsa.repository;
 
 import com.wekers.microsa.entity.ProductEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface ProductJpaRepository extends JpaRepository<ProductEntity, UUID> {
 
-    // Verificar duplicação (nome + descrição)
-    boolean existsByNameAndDescription(String name, String description);
+    // ============================================================
+    // ESCRITA (a constraint unique_content_hash decide a duplicidade)
+    // ============================================================
+
+    // Vazio => produto com o mesmo content_hash já existe (content_hash é gerado pelo banco)
+    @Transactional
+    @Query(value = """
+            INSERT INTO product_entity (name, description, price)
+            VALUES (:name, :description, :price)
+            ON CONFLICT ON CONSTRAINT unique_content_hash DO NOTHING
+            RETURNING id, name, description, price, content_hash, created_at, version
+            """, nativeQuery = true)
+    Optional<ProductEntity> insertIfAbsent(@Param("name") String name,
+                                           @Param("description") String description,
+                                           @Param("price") BigDecimal price);
+
+    // Chaves de duplicidade de um lote pela mesma função da coluna gerada, na ordem dos itens
+    @Query(value = """
+            SELECT product_content_hash(t.name, t.description)
+            FROM unnest(CAST(:names AS text[]), CAST(:descriptions AS text[])) WITH ORDINALITY AS t(name, description, ord)
+            ORDER BY t.ord
+            """, nativeQuery = true)
+    List<UUID> contentHashesOf(@Param("names") String[] names, @Param("descriptions") String[] descriptions);
+
+    // Insert em lote (JDBC batch) não lê a coluna gerada de volta: a entidade recebe a chave antes
+    default void assignContentHashes(List<ProductEntity> entities) {
+        String[] names = new String[entities.size()];
+        String[] descriptions = new String[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            names[i] = entities.get(i).getName();
+            descriptions[i] = entities.get(i).getDescription();
+        }
+        List<UUID> hashes = contentHashesOf(names, descriptions);
+        for (int i = 0; i < entities.size(); i++) {
+            entities.get(i).assignContentHash(hashes.get(i));
+        }
+    }
+
+    // Leitura travada (SELECT ... FOR UPDATE) para o update calcular o diff sem corrida
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ProductEntity> findForUpdateById(UUID id);
+
+    // Duplicação em lote: uma única query, lookup de tamanho fixo no índice de content_hash
+    @Query("SELECT p.contentHash FROM ProductEntity p WHERE p.contentHash IN :hashes")
+    List<UUID> findExistingContentHashes(@Param("hashes") Collection<UUID> hashes);
+
+    // ============================================================
+    // LISTAGEM — projeções (sem hidratar ProductEntity), ordem keyset (created_at, id)
+    // ============================================================
+    String PRODUCT_VIEW_SELECT = """
+            SELECT p.id AS id, p.name AS name, p.description AS description,
+                   p.price AS price, p.contentHash AS contentHash, p.createdAt AS createdAt
+            FROM ProductEntity p
+            """;
+
+    @Query(PRODUCT_VIEW_SELECT + " ORDER BY p.createdAt, p.id")
+    List<ProductView> findAllViews();
+
+    @Query(PRODUCT_VIEW_SELECT + " ORDER BY p.createdAt, p.id")
+    List<ProductView> findFirstPage(Pageable pageable);
+
+    @Query(PRODUCT_VIEW_SELECT + " WHERE (p.createdAt, p.id) > (:createdAt, :id) ORDER BY p.createdAt, p.id")
+    List<ProductView> findPageAfter(@Param("createdAt") Instant createdAt,
+                                   @Param("id") UUID id,
+                                   Pageable pageable);
+
+    // Cursor do lado do servidor: o driver busca FETCH_SIZE linhas por vez (exige transação aberta)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(PRODUCT_VIEW_SELECT + " ORDER BY p.createdAt, p.id")
+    Stream<ProductView> streamAllViews();
+
+    // ============================================================
+    // RECONCILIAÇÃO — páginas keyset por id dentro de uma fatia [from, to] do espaço de UUIDs
+    // (ordem do uuid no Postgres == ordem da string minúscula == ordem do keyword no Elasticsearch)
+    // ============================================================
+    @Query(PRODUCT_VIEW_SELECT + " WHERE p.id >= :from AND p.id <= :to ORDER BY p.id")
+    List<ProductView> findIdRangeFirstPage(@Param("from") UUID from,
+                                           @Param("to") UUID to,
+                                           Pageable pageable);
+
+    @Query(PRODUCT_VIEW_SELECT + " WHERE p.id > :after AND p.id <= :to ORDER BY p.id")
+    List<ProductView> findIdRangePageAfter(@Param("after") UUID after,
+                                           @Param("to") UUID to,
+                                           Pageable pageable);
+
+    // Correção de conteúdo: a versão precisa subir para o índice (version_type=external) aceitar
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ProductEntity p SET p.version = p.version + 1 WHERE p.id IN :ids")
+    int bumpVersions(@Param("ids") Collection<UUID> ids);
+
+    interface ProductView {
+        UUID getId();
+
+        String getName();
+
+        String getDescription();
+
+        BigDecimal getPrice();
 
-    // Buscar um produto específico pelo nome + descrição
-    Optional<ProductEntity> findByNameAndDescription(String name, String description);
+        UUID getContentHash();
 
-    Optional<ProductEntity> findByNameAndDescriptionAndIdNot(String name, String description, UUID id);
+        Instant getCreatedAt();
+    }
 }
@@ -0,0 +1,118 @@
+package com.wekers.microsa.service;
+
+import com.wekers.microsa.config.RabbitMQProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publicação com janela de confirms (publisher confirms correlacionados).
+ *
+ * Até {@code windowSize} mensagens ficam "em voo" ao mesmo tempo; quem publica além disso
+ * bloqueia até algum confirm chegar (backpressure). Mensagens com NACK, devolvidas (returned)
+ * ou sem confirm dentro do prazo são republicadas até {@code maxAttempts}.
+ * O resultado final de cada mensagem é exposto como {@link CompletableFuture}: falha com
+ * {@link RejectedException} quando o broker recusou a mensagem (NACK/returned) e com
+ * {@link AmqpException} quando ela nem chegou a ser confirmada (conexão, timeout do confirm).
+ */
+@Slf4j
+@Service
+public class ConfirmWindowPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitMQProperties.Publisher settings;
+    private final Semaphore window;
+
+    public ConfirmWindowPublisher(RabbitTemplate rabbitTemplate, RabbitMQProperties properties) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.settings = properties.getPublisher();
+        this.window = new Semaphore(settings.getWindowSize());
+    }
+
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Message message) {
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new AmqpException("Interrupted waiting for confirm window", e));
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        // a vaga na janela só é liberada no resultado final (inclui as republicações)
+        result.whenComplete((ok, error) -> window.release());
+
+        send(exchange, routingKey, message, 1, result);
+        return result;
+    }
+
+    public int inFlight() {
+        return settings.getWindowSize() - window.availablePermits();
+    }
+
+    private void send(String exchange, String routingKey, Message message,
+                      int attempt, CompletableFuture<Void> result) {
+
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+
+        try {
+            rabbitTemplate.send(exchange, routingKey, message, correlation);
+        } catch (AmqpException e) {
+            retryOrFail(exchange, routingKey, message, attempt, result, e.getMessage(), false);
+            return;
+        }
+
+        correlation.getFuture()
+                .orTimeout(settings.getConfirmTimeoutMs(), TimeUnit.MILLISECONDS)
+                .whenComplete((confirm, error) -> {
+                    if (error != null) {
+                        retryOrFail(exchange, routingKey, message, attempt, result,
+                                "confirm timeout/error: " + error, false);
+                    } else if (!confirm.isAck()) {
+                        retryOrFail(exchange, routingKey, message, attempt, result,
+                                "nack: " + confirm.getReason(), true);
+                    } else if (correlation.getReturned() != null) {
+                        retryOrFail(exchange, routingKey, message, attempt, result,
+                                "returned: " + correlation.getReturned().getReplyText(), true);
+                    } else {
+                        result.complete(null);
+                    }
+                });
+    }
+
+    private void retryOrFail(String exchange, String routingKey, Message message,
+                             int attempt, CompletableFuture<Void> result, String failure, boolean rejected) {
+
+        if (attempt >= settings.getMaxAttempts()) {
+            log.error("❌ Publish failed after {} attempts (rk={}): {}", attempt, routingKey, failure);
+            // vale o motivo da última tentativa
+            result.completeExceptionally(rejected ? new RejectedException(failure) : new AmqpException(failure));
+            return;
+        }
+
+        log.warn("🔁 Re-publishing (attempt {}/{}, rk={}): {}",
+                attempt + 1, settings.getMaxAttempts(), routingKey, failure);
+
+        // republica fora da thread do confirm callback (thread do canal AMQP)
+        CompletableFuture.runAsync(
+                () -> send(exchange, routingKey, message, attempt + 1, result),
+                CompletableFuture.delayedExecutor(settings.getRetryBackoffMs() * attempt, TimeUnit.MILLISECONDS)
+        );
+    }
+
+    /**
+     * O broker recebeu e recusou esta mensagem (NACK ou returned por falta de rota).
+     */
+    public static class RejectedException extends AmqpException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wekers.microsa.config.OutboxProperties;
+import com.wekers.microsa.dto.ProductEventType;
+import com.wekers.microsa.entity.OutboxEventEntity;
+import com.wekers.microsa.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drena o product_outbox em lotes.
+ *
+ * Cada lote é travado com FOR UPDATE SKIP LOCKED (várias instâncias podem rodar juntas) e reservado
+ * (claimed_until) numa transação curta; a publicação pela janela de confirms do
+ * {@link ConfirmWindowPublisher} (pipeline) e a espera dos confirms acontecem fora dela, sem
+ * segurar conexão nem travas. Uma segunda transação remove o que saiu e libera a reserva do resto.
+ *
+ * Ordem: o id vem de uma sequence em blocos (allocationSize 50) e, entre instâncias, não segue
+ * a ordem dos commits. Dentro do lote, os eventos de cada produto são reordenados pela versão
+ * do produto antes de coalescer e publicar. Entre lotes (ou instâncias) a ordem de chegada não é
+ * garantida: o consumidor descarta versões antigas (version_type=external) e devolve ao retry
+ * o delta cuja baseVersion ainda não foi aplicada.
+ * Linhas confirmadas são removidas; as demais ficam para a próxima rodada.
+ * Broker fora (conexão caída, confirm que não chega no prazo): ninguém conta tentativa, o relay
+ * pausa com backoff exponencial e tenta de novo — uma queda longa não estaciona o outbox inteiro.
+ * Só a recusa de uma mensagem específica (NACK/returned) conta attempts++; ao atingir
+ * {@code max-attempts} a linha é estacionada (parked_at) e sai da varredura, segurando os eventos
+ * seguintes do mesmo produto. Estacionadas voltam sozinhas após {@code parked-release-after-ms}
+ * ou via POST /outbox/parked/release.
+ * Dentro do lote, um evento confirmado que vem depois de um evento do mesmo produto que falhou
+ * não é removido: sai de novo, depois dele, na próxima rodada (o consumidor é idempotente por versão).
+ *
+ * Coalescência: rajadas de UPDATED do mesmo produto (ex.: scripts de reprecificação) viram uma
+ * única mensagem com o estado mais recente. Um UPDATED seguido de outro UPDATED/DELETED do mesmo
+ * produto no lote é descartado (seus campos são mesclados no delta seguinte); o último fica retido até fechar a janela (contada a partir do
+ * primeiro UPDATED pendente), até o lote vir cheio ou até o shutdown. CREATED e DELETED nunca são
+ * descartados nem retidos. O delta mesclado mantém a baseVersion do mais antigo: o consumidor
+ * só o aplica sobre o documento nessa versão.
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private static final String BASE_VERSION_FIELD = "baseVersion";
+
+    // linhas anteriores à coluna version (null) vêm antes; empate pelo id
+    private static final Comparator<OutboxEventEntity> VERSION_ORDER = Comparator
+            .comparing(OutboxEventEntity::getVersion, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(OutboxEventEntity::getId);
+
+    private final OutboxEventRepository repository;
+    private final ProductProducer producer;
+    private final OutboxProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Counter parked;
+    // COUNT das estacionadas em cache: o scrape do Prometheus não vai ao banco
+    private final AtomicLong parkedRows = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository repository,
+                       ProductProducer producer,
+                       OutboxProperties properties,
+                       TransactionTemplate transactionTemplate,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.producer = producer;
+        this.properties = properties;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.parked = Counter.builder("outbox.events.parked")
+                .description("Eventos do outbox estacionados após esgotar as tentativas")
+                .register(meterRegistry);
+        Gauge.builder("outbox.events.parked.rows", parkedRows, AtomicLong::get)
+                .description("Linhas estacionadas aguardando inspeção (atualizado a cada parked-release-check-ms)")
+                .register(meterRegistry);
+    }
+
+    // o flush do shutdown (thread do destroy) espera a rodada agendada terminar, e vice-versa
+    private final ReentrantLock relayLock = new ReentrantLock();
+    private final AtomicInteger outages = new AtomicInteger();
+    private volatile boolean shuttingDown;
+    private volatile long pausedUntilMs;
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:200}")
+    public void relay() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        relayLock.lock();
+        try {
+            // broker fora: espera o backoff (no shutdown tenta uma última vez)
+            if (!shuttingDown && System.currentTimeMillis() < pausedUntilMs) {
+                return;
+            }
+
+            // continua drenando enquanto os lotes vierem cheios e sem falhas
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == properties.getBatchSize());
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.parked-release-check-ms:60000}")
+    public void releaseExpiredParked() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (properties.getParkedReleaseAfterMs() > 0) {
+            releaseParked(Instant.now().minusMillis(properties.getParkedReleaseAfterMs()));
+        }
+        parkedRows.set(repository.countByParkedAtIsNotNull());
+    }
+
+    // Devolve à varredura as linhas estacionadas até parkedBefore (tentativas zeradas)
+    public int releaseParked(Instant parkedBefore) {
+        int released = repository.releaseParked(parkedBefore);
+        if (released > 0) {
+            log.info("🔓 Outbox: {} parked events released", released);
+        }
+        return released;
+    }
+
+    // Fecha a janela de coalescência: nada fica retido esperando a próxima subida
+    @PreDestroy
+    public void flushOnShutdown() {
+        shuttingDown = true;
+        log.info("🛑 Flushing outbox before shutdown");
+        relay();
+    }
+
+    int relayBatch() {
+        List<OutboxEventEntity> locked = transactionTemplate.execute(status -> claimNextBatch());
+        if (locked == null || locked.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+
+        // 0) coalescência: separa o que sai agora, o que foi superado e o que segue na janela
+        Coalesced coalesced = coalesce(locked);
+        List<OutboxEventEntity> batch = coalesced.toPublish();
+
+        // 1) publica tudo sem bloquear (falha de envio também chega pelo future)
+        List<CompletableFuture<Void>> pending = new ArrayList<>(batch.size());
+        for (OutboxEventEntity event : batch) {
+            pending.add(producer.publish(event));
+        }
+
+        // 2) aguarda os confirms dentro de um único prazo para o lote
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getConfirmTimeoutMs());
+        List<OutboxEventEntity> confirmed = new ArrayList<>(batch.size());
+        Set<UUID> failedAggregates = new HashSet<>();
+        int rejected = 0;
+        int unavailable = 0;
+
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEventEntity event = batch.get(i);
+            Failure failure = awaitConfirm(pending.get(i), deadline);
+            if (failure == null) {
+                // depois de uma falha do mesmo produto, fica para sair de novo atrás dela
+                if (!failedAggregates.contains(event.getAggregateId())) {
+                    confirmed.add(event);
+                }
+                continue;
+            }
+            failedAggregates.add(event.getAggregateId());
+            if (!failure.rejected()) {
+                unavailable++;
+                event.markUnavailable(failure.reason());
+            } else {
+                rejected++;
+                if (event.markFailed(failure.reason(), properties.getMaxAttempts())) {
+                    parked.increment();
+                    log.error("🅿️ Outbox event parked after {} attempts: id={} type={} aggregate={} — {}",
+                            event.getAttempts(), event.getId(), event.getEventType(), event.getAggregateId(),
+                            failure.reason());
+                }
+            }
+        }
+
+        settle(batch, confirmed, coalesced);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (unavailable > 0) {
+            long pauseMs = backOff();
+            log.warn("⚠ Outbox relay: broker unavailable ({} unconfirmed, {} rejected, {} confirmed in {} ms); pausing {} ms",
+                    unavailable, rejected, confirmed.size(), elapsedMs, pauseMs);
+            return 0;
+        }
+        outages.set(0);
+
+        int kept = batch.size() - confirmed.size();
+        if (kept > 0) {
+            log.warn("⚠ Outbox relay: {} confirmed, {} rejected, {} kept behind a failed event of the same product in {} ms",
+                    confirmed.size(), rejected, kept - rejected, elapsedMs);
+            return 0; // evita insistir no broker dentro da mesma rodada
+        }
+
+        if (!confirmed.isEmpty() || !coalesced.superseded().isEmpty()) {
+            log.info("📤 Outbox relay: {} events confirmed, {} updates coalesced, {} held in window ({} ms)",
+                    confirmed.size(), coalesced.superseded().size(), coalesced.held().size(), elapsedMs);
+        }
+        return confirmed.size() + coalesced.superseded().size();
+    }
+
+    // transação curta: trava o próximo lote e o reserva até o settle
+    private List<OutboxEventEntity> claimNextBatch() {
+        List<OutboxEventEntity> locked = repository.lockNextBatch(properties.getBatchSize());
+        if (!locked.isEmpty()) {
+            repository.claim(ids(locked), Instant.now().plusMillis(properties.getClaimLeaseMs()));
+        }
+        return inVersionOrder(locked);
+    }
+
+    /*
+     * Depois dos confirms, numa segunda transação: remove as confirmadas e as superadas pela
+     * coalescência, grava tentativas/erro/payload mesclado das que ficam e libera a reserva delas
+     * (inclui as retidas na janela) para a próxima rodada.
+     */
+    private void settle(List<OutboxEventEntity> published, List<OutboxEventEntity> confirmed, Coalesced coalesced) {
+        List<OutboxEventEntity> kept = new ArrayList<>(published);
+        kept.removeAll(confirmed);
+
+        List<Long> release = ids(kept);
+        release.addAll(ids(coalesced.held()));
+
+        transactionTemplate.execute(status -> {
+            repository.deleteAllInBatch(confirmed);
+            repository.deleteAllInBatch(coalesced.superseded());
+            repository.saveAll(kept);
+            if (!release.isEmpty()) {
+                repository.releaseClaims(release);
+            }
+            return null;
+        });
+    }
+
+    private static List<Long> ids(List<OutboxEventEntity> events) {
+        List<Long> ids = new ArrayList<>(events.size());
+        for (OutboxEventEntity event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    // pausa exponencial enquanto o broker não volta
+    private long backOff() {
+        long pauseMs = Math.min(properties.getOutageBackoffMaxMs(),
+                properties.getOutageBackoffMs() << Math.min(outages.getAndIncrement(), 16));
+        pausedUntilMs = System.currentTimeMillis() + pauseMs;
+        return pauseMs;
+    }
+
+    // Cada produto mantém sua posição no lote, mas os seus eventos passam a sair em ordem de versão
+    static List<OutboxEventEntity> inVersionOrder(List<OutboxEventEntity> locked) {
+        Map<UUID, List<OutboxEventEntity>> byAggregate = new HashMap<>();
+        for (OutboxEventEntity event : locked) {
+            byAggregate.computeIfAbsent(event.getAggregateId(), k -> new ArrayList<>()).add(event);
+        }
+        Map<UUID, Iterator<OutboxEventEntity>> next = new HashMap<>();
+        byAggregate.forEach((aggregateId, events) -> {
+            events.sort(VERSION_ORDER);
+            next.put(aggregateId, events.iterator());
+        });
+
+        List<OutboxEventEntity> ordered = new ArrayList<>(locked.size());
+        for (OutboxEventEntity event : locked) {
+            ordered.add(next.get(event.getAggregateId()).next());
+        }
+        return ordered;
+    }
+
+    private Coalesced coalesce(List<OutboxEventEntity> locked) {
+        long windowMs = properties.getCoalesceWindowMs();
+        if (windowMs <= 0) {
+            return new Coalesced(locked, List.of(), List.of());
+        }
+
+        // lote cheio ou shutdown => a janela fecha agora para todo mundo
+        boolean flushAll = shuttingDown || locked.size() == properties.getBatchSize();
+        Instant windowStart = Instant.now().minusMillis(windowMs);
+
+        Map<UUID, Integer> lastIndex = new HashMap<>();
+        Map<UUID, Instant> firstUpdateAt = new HashMap<>();
+        for (int i = 0; i < locked.size(); i++) {
+            OutboxEventEntity event = locked.get(i);
+            lastIndex.put(event.getAggregateId(), i);
+            if (event.getEventType() == ProductEventType.UPDATED) {
+                firstUpdateAt.putIfAbsent(event.getAggregateId(), event.getCreatedAt());
+            }
+        }
+
+        // produto cujo último evento é UPDATED e a janela ainda está aberta: fica tudo retido
+        Set<UUID> held = new HashSet<>();
+        if (!flushAll) {
+            lastIndex.forEach((aggregateId, i) -> {
+                if (locked.get(i).getEventType() == ProductEventType.UPDATED
+                        && firstUpdateAt.get(aggregateId).isAfter(windowStart)) {
+                    held.add(aggregateId);
+                }
+            });
+        }
+
+        List<OutboxEventEntity> toPublish = new ArrayList<>(locked.size());
+        List<OutboxEventEntity> superseded = new ArrayList<>();
+        List<OutboxEventEntity> heldEvents = new ArrayList<>();
+        Map<UUID, ObjectNode> mergedDeltas = new HashMap<>();
+
+        for (int i = 0; i < locked.size(); i++) {
+            OutboxEventEntity event = locked.get(i);
+            UUID aggregateId = event.getAggregateId();
+            boolean update = event.getEventType() == ProductEventType.UPDATED;
+
+            if (update && held.contains(aggregateId)) {
+                heldEvents.add(event);
+            } else if (update && lastIndex.get(aggregateId) != i) {
+                // há um UPDATED/DELETED mais novo do mesmo produto no lote (versão maior: o lote já
+                // está em ordem de versão por produto);
+                // UPDATED é delta: seus campos seguem para o próximo UPDATED do produto
+                // (no merge, os campos mais novos sobrescrevem os anteriores, inclusive a versão;
+                // a baseVersion fica a do primeiro delta)
+                mergedDeltas.merge(aggregateId, readDelta(event), OutboxRelay::mergeDelta);
+                superseded.add(event);
+            } else {
+                ObjectNode merged = update ? mergedDeltas.remove(aggregateId) : null;
+                if (merged != null) {
+                    mergeDelta(merged, readDelta(event));
+                    // persiste o delta acumulado (se não for confirmado): as superadas são removidas no settle
+                    event.replacePayload(merged.toString());
+                }
+                toPublish.add(event);
+            }
+        }
+        return new Coalesced(toPublish, superseded, heldEvents);
+    }
+
+    // deltas em ordem de versão: o acumulado parte da base do mais antigo
+    private static ObjectNode mergeDelta(ObjectNode acc, ObjectNode newer) {
+        JsonNode baseVersion = acc.get(BASE_VERSION_FIELD);
+        acc.setAll(newer);
+        if (baseVersion != null) {
+            acc.set(BASE_VERSION_FIELD, baseVersion);
+        }
+        return acc;
+    }
+
+    private ObjectNode readDelta(OutboxEventEntity event) {
+        try {
+            return (ObjectNode) objectMapper.readTree(event.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Payload inválido no outbox: id=" + event.getId(), e);
+        }
+    }
+
+    // null = confirmado; caso contrário, o motivo e se foi recusa do broker
+    private Failure awaitConfirm(CompletableFuture<Void> confirm, long deadlineNanos) {
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            confirm.get(remaining, TimeUnit.NANOSECONDS);
+            return null;
+        } catch (TimeoutException e) {
+            return new Failure("confirm timeout", false);
+        } catch (ExecutionException e) {
+            return new Failure(e.getCause().getMessage(),
+                    e.getCause() instanceof ConfirmWindowPublisher.RejectedException);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Failure("interrupted", false);
+        }
+    }
+
+    private record Failure(String reason, boolean rejected) {
+    }
+
+    private record Coalesced(List<OutboxEventEntity> toPublish, List<OutboxEventEntity> superseded,
+                             List<OutboxEventEntity> held) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wekers.microsa.dto.ProductDeletedEvent;
+import com.wekers.microsa.dto.ProductEventType;
+import com.wekers.microsa.dto.ProductUpdatedEvent;
+import com.wekers.microsa.entity.OutboxEventEntity;
+import com.wekers.microsa.entity.ProductEntity;
+import com.wekers.microsa.mapper.ProductMapper;
+import com.wekers.microsa.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Grava os eventos de produto na tabela product_outbox, na MESMA transação da escrita.
+ * A publicação no RabbitMQ fica a cargo do {@link OutboxRelay}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository repository;
+    private final ProductMapper mapper;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueCreated(ProductEntity entity) {
+        enqueue(entity.getId(), ProductEventType.CREATED, entity.getVersion(), mapper.toCreatedEvent(entity));
+    }
+
+    // Lote de criações: um saveAll só, inserido via JDBC batch
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueCreatedAll(List<ProductEntity> entities) {
+        List<OutboxEventEntity> events = new ArrayList<>(entities.size());
+        for (ProductEntity entity : entities) {
+            events.add(toOutbox(entity.getId(), ProductEventType.CREATED, entity.getVersion(),
+                    mapper.toCreatedEvent(entity)));
+        }
+        repository.saveAll(events);
+        log.debug("📝 {} CREATED events stored in outbox", events.size());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueUpdated(ProductEntity entity) {
+        enqueue(entity.getId(), ProductEventType.UPDATED, entity.getVersion(), mapper.toUpdatedEvent(entity));
+    }
+
+    // Delta calculado no update: só os campos alterados
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueUpdated(ProductUpdatedEvent delta) {
+        enqueue(delta.id(), ProductEventType.UPDATED, delta.version(), delta);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueDeleted(ProductEntity entity) {
+        ProductDeletedEvent event = mapper.toDeletedEvent(entity); // versão da remoção = atual + 1
+        enqueue(entity.getId(), ProductEventType.DELETED, event.version(), event);
+    }
+
+    // Remoção de algo que só existe no índice (reconciliação): não há entidade no Postgres
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueDeleted(ProductDeletedEvent event) {
+        enqueue(event.id(), ProductEventType.DELETED, event.version(), event);
+    }
+
+    private void enqueue(UUID aggregateId, ProductEventType type, long version, Object event) {
+        repository.save(toOutbox(aggregateId, type, version, event));
+        log.debug("📝 {} event stored in outbox: id={}", type, aggregateId);
+    }
+
+    private OutboxEventEntity toOutbox(UUID aggregateId, ProductEventType type, long version, Object event) {
+        try {
+            return new OutboxEventEntity(aggregateId, type, version, objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar evento " + type + " do produto " + aggregateId, e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.wekers.microsa.config.RabbitMQProperties;
+import com.wekers.microsa.dto.ProductEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializa os eventos de produto no formato configurado em {@code app.rabbitmq.encoding}.
+ *
+ * O formato vai no content_type (JSON ou Smile) e a compressão no content_encoding (gzip),
+ * então o consumer decide como decodificar mensagem a mensagem.
+ */
+@Slf4j
+@Component
+public class ProductEventEncoder {
+
+    public static final String CONTENT_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+    public static final String EVENT_TYPE_HEADER = "x-event-type";
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+
+    private final ObjectMapper jsonMapper;
+    private final SmileMapper smileMapper;
+    private final boolean smile;
+    private final int compressThresholdBytes;
+
+    public ProductEventEncoder(ObjectMapper jsonMapper, RabbitMQProperties properties) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = SmileMapper.builder()
+                .findAndAddModules()
+                .build();
+        this.smile = "smile".equalsIgnoreCase(properties.getEncoding().getFormat());
+        this.compressThresholdBytes = properties.getEncoding().getCompressThresholdBytes();
+        log.info("📦 Product events encoded as {}", smile ? CONTENT_TYPE_SMILE : MessageProperties.CONTENT_TYPE_JSON);
+    }
+
+    // payload do outbox já está em JSON: em modo Smile é transcodificado
+    public Message encodeJson(ProductEventType type, String json) {
+        try {
+            byte[] body = smile
+                    ? smileMapper.writeValueAsBytes(jsonMapper.readTree(json))
+                    : json.getBytes(StandardCharsets.UTF_8);
+            return toMessage(type, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao transcodificar evento " + type, e);
+        }
+    }
+
+    private Message toMessage(ProductEventType type, byte[] body) throws IOException {
+        MessageProperties props = new MessageProperties();
+        if (smile) {
+            props.setContentType(CONTENT_TYPE_SMILE);
+        } else {
+            props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            props.setContentEncoding(StandardCharsets.UTF_8.name());
+        }
+        // mesmo header que o Jackson2JsonMessageConverter gravaria
+        props.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, type.eventClass().getName());
+        // filas particionadas misturam os três tipos: o consumer despacha por este header
+        props.setHeader(EVENT_TYPE_HEADER, type.name());
+        // epoch ms da publicação: o consumer mede o lag ponta a ponta (republicações mantêm o original)
+        props.setHeader(PUBLISHED_AT_HEADER, System.currentTimeMillis());
+
+        // descrições longas: compensa comprimir
+        if (compressThresholdBytes > 0 && body.length > compressThresholdBytes) {
+            body = gzip(body);
+            props.setContentEncoding(CONTENT_ENCODING_GZIP);
+        }
+
+        return new Message(body, props);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
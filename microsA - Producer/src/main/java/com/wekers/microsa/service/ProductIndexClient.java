@@ -0,0 +1,79 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.wekers.microsa.config.ReconciliationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura do índice de produtos direto pela API REST do Elasticsearch (o microsA não tem o client do ES).
+ * Só o necessário para a reconciliação: páginas ordenadas por id via search_after.
+ */
+@Service
+public class ProductIndexClient {
+
+    private final RestClient client;
+    private final String index;
+
+    public ProductIndexClient(ReconciliationProperties properties) {
+        this.client = RestClient.builder()
+                .baseUrl(properties.getElasticsearchUrl())
+                .build();
+        this.index = properties.getIndex();
+    }
+
+    /**
+     * Próxima página de documentos com id em [from, to], em ordem de id.
+     * {@code after} é o último id da página anterior (null na primeira).
+     */
+    public List<IndexedProduct> page(String from, String to, String after, int size) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", size);
+        body.put("version", true);            // _version == versão do Postgres (version_type=external)
+        body.put("track_total_hits", false);
+        body.put("_source", List.of("name", "description", "price", "uniqueKey"));
+        body.put("query", Map.of("range", Map.of("id", Map.of("gte", from, "lte", to))));
+        body.put("sort", List.of(Map.of("id", "asc")));
+        if (after != null) {
+            body.put("search_after", List.of(after));
+        }
+
+        JsonNode response = client.post()
+                .uri("/{index}/_search", index)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(JsonNode.class);
+
+        JsonNode hits = response == null ? null : response.path("hits").path("hits");
+        if (hits == null || hits.isEmpty()) {
+            return List.of();
+        }
+
+        List<IndexedProduct> page = new ArrayList<>(hits.size());
+        for (JsonNode hit : hits) {
+            JsonNode source = hit.path("_source");
+            JsonNode price = source.path("price");
+            page.add(new IndexedProduct(
+                    hit.path("_id").asText(),
+                    source.path("name").asText(null),
+                    source.path("description").asText(null),
+                    price.isNumber() ? price.decimalValue() : null,
+                    source.path("uniqueKey").asText(null),
+                    hit.path("_version").asLong()
+            ));
+        }
+        return page;
+    }
+
+    public record IndexedProduct(String id, String name, String description, BigDecimal price,
+                                 String uniqueKey, long version) {
+    }
+}
@@ -1,79 +1,56 @@
 package com.wekers.microsa.service;
 
 import com.wekers.microsa.config.RabbitMQProperties;
-import com.wekers.microsa.dto.ProductCreatedEvent;
-import com.wekers.microsa.dto.ProductDeletedEvent;
-import com.wekers.microsa.dto.ProductUpdatedEvent;
-import com.wekers.microsa.entity.ProductEntity;
+import com.wekers.microsa.dto.ProductEventType;
+import com.wekers.microsa.entity.OutboxEventEntity;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.core.Message;
 import org.springframework.stereotype.Service;
 
-@Slf4j
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 public class ProductProducer {
 
-    private final RabbitTemplate rabbitTemplate;
     private final RabbitMQProperties properties;
+    private final ConfirmWindowPublisher publisher;
+    private final ProductEventEncoder encoder;
 
     // ======================================================
-    // CREATE
-    // ======================================================
-    public void sendCreated(ProductEntity entity) {
-        ProductCreatedEvent evt = new ProductCreatedEvent(
-                entity.getId(),
-                entity.getName(),
-                entity.getDescription(),
-                entity.getPrice()
-        );
-
-        rabbitTemplate.convertAndSend(
-                properties.getExchanges().getMain(),
-                properties.getRoutingKeys().getCreated(),
-                evt // envia objeto puro, converter faz JSON
-        );
-
-        log.info("📤 Sent CREATED event to RabbitMQ: id={}", entity.getId());
-    }
-
-    // ======================================================
-    // UPDATE
+    // OUTBOX
     // ======================================================
-    public void sendUpdated(ProductEntity entity) {
-        ProductUpdatedEvent evt = new ProductUpdatedEvent(
-                entity.getId(),
-                entity.getName(),
-                entity.getDescription(),
-                entity.getPrice()
-        );
-
-        rabbitTemplate.convertAndSend(
+    /**
+     * Publica um evento já serializado no outbox pela janela de confirms.
+     * O future completa quando o broker confirma (ou falha após as republicações).
+     */
+    public CompletableFuture<Void> publish(OutboxEventEntity event) {
+        Message message = encoder.encodeJson(event.getEventType(), event.getPayload());
+        message.getMessageProperties().setMessageId(String.valueOf(event.getId()));
+
+        return publisher.publish(
                 properties.getExchanges().getMain(),
-                properties.getRoutingKeys().getUpdated(),
-                evt
+                routingKey(event.getEventType(), event.getAggregateId()),
+                message
         );
-
-        log.info("📤 Sent UPDATED event to RabbitMQ: id={}", entity.getId());
     }
 
     // ======================================================
-    // DELETE
+    // ROTEAMENTO
     // ======================================================
-    public void sendDeleted(ProductEntity entity) {
-        ProductDeletedEvent evt = new ProductDeletedEvent(
-                entity.getId(),
-                entity.getName(),
-                entity.getDescription()
-        );
-
-        rabbitTemplate.convertAndSend(
-                properties.getExchanges().getMain(),
-                properties.getRoutingKeys().getDeleted(),
-                evt
-        );
-
-        log.info("📤 Sent DELETED event to RabbitMQ: id={}", entity.getId());
+    /**
+     * Com partições habilitadas, todos os eventos de um mesmo id caem na mesma fila
+     * (hash do UUID mod N), que tem um único consumer ativo: a ordem por produto se mantém
+     * enquanto o throughput escala com o número de partições.
+     */
+    private String routingKey(ProductEventType type, UUID id) {
+        RabbitMQProperties.Partitions partitions = properties.getPartitions();
+        if (!partitions.isEnabled()) {
+            return type.routingKey(properties.getRoutingKeys());
+        }
+        int partition = Math.floorMod(id.hashCode(), partitions.getCount());
+        return partitions.routingKey(partition, type.name().toLowerCase(Locale.ROOT));
     }
 }
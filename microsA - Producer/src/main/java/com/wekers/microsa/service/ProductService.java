@@ -1,18 +1,51 @@
 package com.wekers.microsa.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.wekers.microsa.config.CacheConfig;
+import com.wekers.microsa.config.ProductCacheProperties;
+import com.wekers.microsa.config.ReplicaProperties;
+import com.wekers.microsa.dto.ProductBatchItemResult;
+import com.wekers.microsa.dto.ProductBatchResponse;
+import com.wekers.microsa.dto.ProductPageResponse;
 import com.wekers.microsa.dto.ProductRequest;
 import com.wekers.microsa.dto.ProductResponse;
+import com.wekers.microsa.dto.ProductUpdatedEvent;
 import com.wekers.microsa.entity.ProductEntity;
+import com.wekers.microsa.exception.ConflictException;
 import com.wekers.microsa.exception.ProductNotFoundException;
 import com.wekers.microsa.mapper.ProductMapper;
 import com.wekers.microsa.repository.ProductJpaRepository;
+import com.wekers.microsa.repository.ProductJpaRepository.ProductView;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -20,36 +53,150 @@ import java.util.UUID;
 public class ProductService {
 
     private final ProductJpaRepository repository;
-    private final ProductProducer producer;
+    private final OutboxService outbox;
     private final ProductMapper mapper;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final ProductCacheProperties cacheProperties;
+    private final ReplicaProperties replica;
+
+    // limite de itens por POST /products/batch
+    static final int MAX_BATCH_SIZE = 5000;
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_FLUSH_EVERY = 500;
+
+    private static final String UNIQUE_CONSTRAINT = "unique_content_hash";
+    private static final String DUPLICATE_MESSAGE = "Produto já existe (name+description)";
 
     @Transactional(readOnly = true)
     public List<ProductResponse> listAll() {
-        return repository.findAll()
+        return repository.findAllViews()
                 .stream()
                 .map(mapper::toResponse)
                 .toList();
     }
 
+    // Paginação keyset: o cursor é (created_at, id) do último item da página anterior
+    @Transactional(readOnly = true)
+    public ProductPageResponse listPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit deve estar entre 1 e " + MAX_PAGE_SIZE);
+        }
+
+        Pageable page = PageRequest.of(0, limit);
+        List<ProductView> views;
+        if (cursor == null || cursor.isBlank()) {
+            views = repository.findFirstPage(page);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            views = repository.findPageAfter(after.createdAt(), after.id(), page);
+        }
+
+        String nextCursor = null;
+        if (views.size() == limit) {
+            ProductView last = views.get(views.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return new ProductPageResponse(views.stream().map(mapper::toResponse).toList(), nextCursor);
+    }
+
+    // NDJSON: cada linha é escrita assim que lida do cursor JDBC; memória constante
+    @Transactional(readOnly = true)
+    public void streamAll(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(ProductResponse.class);
+        int written = 0;
+
+        try (Stream<ProductView> views = repository.streamAllViews()) {
+            Iterator<ProductView> it = views.iterator();
+            while (it.hasNext()) {
+                out.write(writer.writeValueAsBytes(mapper.toResponse(it.next())));
+                out.write('\n');
+                if (++written % STREAM_FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+    }
+
     @Transactional
     public ProductResponse create(ProductRequest request) {
         log.info("Criando produto: name='{}', description='{}'", request.name(), request.description());
 
-        // Evita duplicidade (name + description)
-        repository.findByNameAndDescription(request.name(), request.description())
-                .ifPresent(p -> {
-                    throw new IllegalArgumentException("Produto já existe (name+description)");
-                });
+        // INSERT ... ON CONFLICT DO NOTHING RETURNING: duplicidade (name + description) sem pré-consulta
+        ProductEntity saved = repository.insertIfAbsent(request.name(), request.description(), request.price())
+                .orElseThrow(() -> new IllegalArgumentException(DUPLICATE_MESSAGE));
 
-        ProductEntity entity = mapper.toEntity(request);
-        ProductEntity saved = repository.save(entity);
-
-        producer.sendCreated(saved);
+        outbox.enqueueCreated(saved);
 
         return mapper.toResponse(saved);
     }
 
+    @Transactional
+    public ProductBatchResponse createBatch(List<ProductRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Lote deve ter entre 1 e " + MAX_BATCH_SIZE + " produtos");
+        }
+        log.info("Criando lote de {} produtos", requests.size());
+
+        // 1) chaves únicas do lote, calculadas pelo banco (repetições dentro do próprio lote já são duplicadas)
+        String[] names = new String[requests.size()];
+        String[] descriptions = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            names[i] = requests.get(i).name();
+            descriptions[i] = requests.get(i).description();
+        }
+        List<UUID> keys = repository.contentHashesOf(names, descriptions);
+        Map<UUID, Integer> firstIndexByKey = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            firstIndexByKey.putIfAbsent(keys.get(i), i);
+        }
+
+        // 2) uma única query set-based contra o banco
+        Set<UUID> existing = new HashSet<>(repository.findExistingContentHashes(firstIndexByKey.keySet()));
+
+        // 3) monta as entidades novas; UUID gerado em memória pelo Hibernate => insert em JDBC batch
+        List<ProductEntity> toInsert = new ArrayList<>();
+        List<Integer> insertIndexes = new ArrayList<>();
+        ProductBatchItemResult[] results = new ProductBatchItemResult[requests.size()];
+
+        for (int i = 0; i < requests.size(); i++) {
+            ProductRequest r = requests.get(i);
+            UUID key = keys.get(i);
+            if (existing.contains(key) || firstIndexByKey.get(key) != i) {
+                results[i] = ProductBatchItemResult.duplicate(i);
+                continue;
+            }
+            ProductEntity entity = mapper.toEntity(r);
+            entity.assignContentHash(key); // o insert em lote não lê a coluna gerada de volta
+            toInsert.add(entity);
+            insertIndexes.add(i);
+        }
+
+        List<ProductEntity> saved = repository.saveAll(toInsert);
+        try {
+            repository.flush(); // violação sai aqui, não no commit (onde viraria 500 sem contexto)
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateViolation(e)) {
+                // outra requisição inseriu a mesma chave entre a consulta do passo 2 e o insert
+                throw new ConflictException("Produto do lote criado concorrentemente (name+description); reenvie o lote");
+            }
+            throw e;
+        }
+        for (int j = 0; j < saved.size(); j++) {
+            results[insertIndexes.get(j)] = ProductBatchItemResult.created(insertIndexes.get(j), saved.get(j).getId());
+        }
+
+        // 4) eventos do lote vão juntos para o outbox
+        outbox.enqueueCreatedAll(saved);
+
+        log.info("Lote concluído: {} criados, {} duplicados", saved.size(), requests.size() - saved.size());
+        return new ProductBatchResponse(requests.size(), saved.size(), requests.size() - saved.size(), List.of(results));
+    }
+
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#id")
     public ProductResponse getById(UUID id) {
         ProductEntity entity = repository.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
@@ -60,30 +207,34 @@ public class ProductService {
     public ProductResponse update(UUID id, ProductRequest request) {
         log.info("Atualizando produto id={}", id);
 
-        ProductEntity entity = repository.findById(id)
+        // linha travada até o commit: o diff abaixo é contra o estado que será sobrescrito
+        ProductEntity entity = repository.findForUpdateById(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
 
-        boolean nameChanged = !entity.getName().equals(request.name());
-        boolean descriptionChanged = !entity.getDescription().equals(request.description());
-
-        // Só verifica duplicidade se (name + description) realmente mudou
-        if (nameChanged || descriptionChanged) {
-            repository.findByNameAndDescriptionAndIdNot(
-                            request.name(),
-                            request.description(),
-                            id
-                    )
-                    .ifPresent(p -> {
-                        throw new IllegalArgumentException("Produto já existe (name+description)");
-                    });
+        ProductUpdatedEvent delta = mapper.toUpdatedDelta(entity, request);
+        if (delta == null) {
+            log.info("Update sem alterações ignorado: id={}", id);
+            return mapper.toResponse(entity);
         }
 
         mapper.updateEntityFromRequest(request, entity);
-        ProductEntity saved = repository.save(entity);
+        try {
+            repository.flush(); // UPDATE ... WHERE version = ? (incrementa @Version)
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateViolation(e)) {
+                throw new IllegalArgumentException(DUPLICATE_MESSAGE);
+            }
+            throw e;
+        }
 
-        producer.sendUpdated(saved);
+        // nome ou descrição mudou => a chave nova veio do banco (RETURNING content_hash do UPDATE)
+        if (delta.name() != null || delta.description() != null) {
+            delta = delta.withContentHash(entity.getContentHash());
+        }
+        outbox.enqueueUpdated(delta);
+        evictAfterCommit(id);
 
-        return mapper.toResponse(saved);
+        return mapper.toResponse(entity);
     }
 
     @Transactional
@@ -95,6 +246,59 @@ public class ProductService {
 
         repository.delete(entity);
 
-        producer.sendDeleted(entity);
+        outbox.enqueueDeleted(entity);
+        evictAfterCommit(id);
+    }
+
+    /**
+     * Invalida só depois do commit: antes disso uma leitura concorrente recolocaria o valor antigo.
+     * Isso não fecha a janela: um getById que leu a linha antiga antes do commit (ou da réplica,
+     * atrasada) ainda pode gravar no cache depois da primeira invalidação. A segunda invalidação,
+     * atrasada, limita essa janela a second-evict-delay (ou ao lag máximo da réplica, se maior).
+     */
+    private void evictAfterCommit(UUID id) {
+        long delayMs = cacheProperties.getSecondEvictDelay().toMillis();
+        if (replica.isEnabled()) {
+            delayMs = Math.max(delayMs, replica.getMaxLagMs());
+        }
+        long secondEvictMs = delayMs;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(id);
+                CompletableFuture.runAsync(() -> evict(id),
+                        CompletableFuture.delayedExecutor(secondEvictMs, TimeUnit.MILLISECONDS));
+            }
+        });
+    }
+
+    private void evict(UUID id) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (cache != null) {
+            cache.evict(id);
+        }
+    }
+
+    private boolean isDuplicateViolation(DataIntegrityViolationException e) {
+        String cause = e.getMostSpecificCause().getMessage();
+        return cause != null && cause.contains(UNIQUE_CONSTRAINT);
+    }
+
+    private record PageCursor(Instant createdAt, UUID id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new PageCursor(Instant.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
     }
 }
@@ -0,0 +1,366 @@
+package com.wekers.microsa.service;
+
+import com.wekers.microsa.config.ReconciliationProperties;
+import com.wekers.microsa.dto.ProductDeletedEvent;
+import com.wekers.microsa.dto.ReconciliationReport;
+import com.wekers.microsa.dto.ReconciliationStatus;
+import com.wekers.microsa.exception.ConflictException;
+import com.wekers.microsa.repository.ProductJpaRepository;
+import com.wekers.microsa.repository.ProductJpaRepository.ProductView;
+import com.wekers.microsa.service.ProductIndexClient.IndexedProduct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reconciliação Postgres -> índice de produtos, sem reconstruir o índice.
+ *
+ * O espaço de UUIDs é dividido em fatias comparadas em paralelo. Em cada fatia, páginas keyset
+ * do Postgres (ordem de id) e páginas search_after do Elasticsearch (mesma ordem) são percorridas
+ * como um merge-join, comparando um hash do conteúdo de cada documento. Só as diferenças viram
+ * eventos no outbox (CREATED / UPDATED / DELETED), então o custo de reparo acompanha o tamanho
+ * do drift; a memória fica limitada a uma página de cada lado por fatia.
+ *
+ * Com milhões de documentos a execução passa de qualquer timeout de cliente/proxy: o job roda
+ * em background (um por vez) e o resultado fica disponível em {@link #status()}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReconciliationService {
+
+    private static final long UUID_PREFIX_SPACE = 1L << 32; // fatias pelos 8 primeiros dígitos hex
+
+    private final ProductJpaRepository repository;
+    private final ProductIndexClient index;
+    private final OutboxService outbox;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<ReconciliationStatus> last = new AtomicReference<>();
+
+    // Dispara a reconciliação em background; ConflictException se já houver uma em andamento
+    public ReconciliationStatus start(boolean dryRun) {
+        int slices = properties.getSlices();
+        if (slices < 1 || slices > 256) {
+            throw new IllegalArgumentException("app.reconciliation.slices deve estar entre 1 e 256");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("Reconciliação já em andamento");
+        }
+
+        ReconciliationStatus started = ReconciliationStatus.running(dryRun);
+        last.set(started);
+        try {
+            Thread.ofVirtual().name("reconciliation").start(() -> {
+                try {
+                    last.set(started.completed(run(dryRun)));
+                } catch (Exception e) {
+                    log.error("❌ Reconciliation failed", e);
+                    last.set(started.failed(e));
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return started;
+    }
+
+    // Última reconciliação disparada desde a subida (vazio se nenhuma)
+    public Optional<ReconciliationStatus> status() {
+        return Optional.ofNullable(last.get());
+    }
+
+    ReconciliationReport run(boolean dryRun) {
+        int slices = properties.getSlices();
+
+        log.info("🔍 Reconciliation started: slices={}, pageSize={}, dryRun={}",
+                slices, properties.getPageSize(), dryRun);
+        long start = System.nanoTime();
+
+        List<SliceStats> results = new ArrayList<>(slices);
+        try (ExecutorService executor = Executors.newFixedThreadPool(slices)) {
+            List<CompletableFuture<SliceStats>> futures = new ArrayList<>(slices);
+            for (int i = 0; i < slices; i++) {
+                Slice slice = Slice.of(i, slices);
+                futures.add(CompletableFuture.supplyAsync(() -> reconcileSlice(slice, dryRun), executor));
+            }
+            futures.forEach(f -> results.add(f.join()));
+        }
+
+        SliceStats total = new SliceStats();
+        results.forEach(total::add);
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long rowsPerSecond = total.postgresRows * 1000 / elapsedMs;
+
+        log.info("✅ Reconciliation finished in {} ms: {} rows / {} docs compared ({} rows/s) — missing={}, changed={}, extra={}{}",
+                elapsedMs, total.postgresRows, total.indexedDocs, rowsPerSecond,
+                total.missing, total.changed, total.extra, dryRun ? " (dry run)" : "");
+
+        return new ReconciliationReport(dryRun, slices, total.postgresRows, total.indexedDocs,
+                total.missing, total.changed, total.extra, elapsedMs, rowsPerSecond);
+    }
+
+    // ======================================================
+    // MERGE-JOIN DE UMA FATIA
+    // ======================================================
+    private SliceStats reconcileSlice(Slice slice, boolean dryRun) {
+        SliceStats stats = new SliceStats();
+        Corrections corrections = new Corrections();
+        MessageDigest digest = md5();
+
+        PostgresCursor pg = new PostgresCursor(slice);
+        IndexCursor es = new IndexCursor(slice);
+
+        ProductView row = pg.next();
+        IndexedProduct doc = es.next();
+
+        while (row != null || doc != null) {
+            // uuid no Postgres e keyword no ES ordenam como a string hex minúscula (UUID.compareTo não!)
+            int cmp = row == null ? 1
+                    : doc == null ? -1
+                    : row.getId().toString().compareTo(doc.id());
+
+            if (cmp < 0) {
+                corrections.missing.add(row.getId());
+                stats.missing++;
+                stats.postgresRows++;
+                row = pg.next();
+            } else if (cmp > 0) {
+                corrections.extra.add(doc);
+                stats.extra++;
+                stats.indexedDocs++;
+                doc = es.next();
+            } else {
+                if (!Arrays.equals(
+                        contentHash(digest, row.getName(), row.getDescription(), row.getPrice(),
+                                row.getContentHash().toString()),
+                        contentHash(digest, doc.name(), doc.description(), doc.price(), doc.uniqueKey()))) {
+                    corrections.changed.add(row.getId());
+                    stats.changed++;
+                }
+                stats.postgresRows++;
+                stats.indexedDocs++;
+                row = pg.next();
+                doc = es.next();
+            }
+
+            if (corrections.size() >= properties.getPageSize()) {
+                flush(corrections, dryRun);
+            }
+        }
+        flush(corrections, dryRun);
+
+        log.debug("🔍 Slice {} done: rows={}, docs={}, missing={}, changed={}, extra={}",
+                slice, stats.postgresRows, stats.indexedDocs, stats.missing, stats.changed, stats.extra);
+        return stats;
+    }
+
+    // ======================================================
+    // CORREÇÕES (via outbox, mesma entrega dos eventos normais)
+    // ======================================================
+    private void flush(Corrections corrections, boolean dryRun) {
+        if (corrections.size() == 0) {
+            return;
+        }
+        if (!dryRun) {
+            transactionTemplate.executeWithoutResult(status -> {
+                // o estado é relido na transação: o que mudou desde a comparação sai com o valor atual
+                if (!corrections.missing.isEmpty()) {
+                    repository.findAllById(corrections.missing).forEach(outbox::enqueueCreated);
+                }
+                if (!corrections.changed.isEmpty()) {
+                    // mesma versão no índice recusaria a correção (version_type=external)
+                    repository.bumpVersions(corrections.changed);
+                    repository.findAllById(corrections.changed).forEach(outbox::enqueueUpdated);
+                }
+                if (!corrections.extra.isEmpty()) {
+                    enqueueDeletes(corrections.extra);
+                }
+            });
+        }
+        corrections.clear();
+    }
+
+    private void enqueueDeletes(List<IndexedProduct> docs) {
+        List<UUID> ids = docs.stream().map(d -> UUID.fromString(d.id())).toList();
+
+        // produto criado depois da leitura da página do Postgres não pode ser removido do índice
+        Set<UUID> alive = new HashSet<>();
+        repository.findAllById(ids).forEach(p -> alive.add(p.getId()));
+
+        for (IndexedProduct doc : docs) {
+            UUID id = UUID.fromString(doc.id());
+            if (!alive.contains(id)) {
+                outbox.enqueueDeleted(new ProductDeletedEvent(id, doc.name(), doc.description(), doc.version() + 1));
+            }
+        }
+    }
+
+    // ======================================================
+    // HASH DE CONTEÚDO
+    // ======================================================
+    // uniqueKey entra na comparação: documentos ainda com a chave antiga (name::description) são reindexados
+    private static byte[] contentHash(MessageDigest digest, String name, String description, BigDecimal price,
+                                      String uniqueKey) {
+        // price: numeric(…) no Postgres x double no ES => compara pela forma canônica
+        String normalizedPrice = price == null ? "" : price.stripTrailingZeros().toPlainString();
+        digest.reset();
+        digest.update(String.valueOf(name).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(description).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalizedPrice.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(uniqueKey).getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ======================================================
+    // CURSORES (uma página em memória de cada lado)
+    // ======================================================
+    private final class PostgresCursor {
+        private final Slice slice;
+        private final Pageable page = PageRequest.of(0, properties.getPageSize());
+        private List<ProductView> rows = List.of();
+        private int position;
+        private UUID last;
+        private boolean exhausted;
+
+        PostgresCursor(Slice slice) {
+            this.slice = slice;
+        }
+
+        ProductView next() {
+            if (position == rows.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                rows = last == null
+                        ? repository.findIdRangeFirstPage(slice.from(), slice.to(), page)
+                        : repository.findIdRangePageAfter(last, slice.to(), page);
+                position = 0;
+                exhausted = rows.size() < properties.getPageSize();
+                if (rows.isEmpty()) {
+                    return null;
+                }
+            }
+            ProductView row = rows.get(position++);
+            last = row.getId();
+            return row;
+        }
+    }
+
+    private final class IndexCursor {
+        private final Slice slice;
+        private List<IndexedProduct> docs = List.of();
+        private int position;
+        private String last;
+        private boolean exhausted;
+
+        IndexCursor(Slice slice) {
+            this.slice = slice;
+        }
+
+        IndexedProduct next() {
+            if (position == docs.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                docs = index.page(slice.from().toString(), slice.to().toString(), last, properties.getPageSize());
+                position = 0;
+                exhausted = docs.size() < properties.getPageSize();
+                if (docs.isEmpty()) {
+                    return null;
+                }
+            }
+            IndexedProduct doc = docs.get(position++);
+            last = doc.id();
+            return doc;
+        }
+    }
+
+    // Faixa [from, to] de UUIDs cujo prefixo de 32 bits cai na fatia
+    private record Slice(UUID from, UUID to) {
+
+        static Slice of(int index, int count) {
+            long first = UUID_PREFIX_SPACE * index / count;
+            long last = UUID_PREFIX_SPACE * (index + 1) / count - 1;
+            return new Slice(
+                    UUID.fromString(String.format(Locale.ROOT, "%08x-0000-0000-0000-000000000000", first)),
+                    UUID.fromString(String.format(Locale.ROOT, "%08x-ffff-ffff-ffff-ffffffffffff", last))
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "[" + from + ", " + to + "]";
+        }
+    }
+
+    private static final class Corrections {
+        final List<UUID> missing = new ArrayList<>();
+        final List<UUID> changed = new ArrayList<>();
+        final List<IndexedProduct> extra = new ArrayList<>();
+
+        int size() {
+            return missing.size() + changed.size() + extra.size();
+        }
+
+        void clear() {
+            missing.clear();
+            changed.clear();
+            extra.clear();
+        }
+    }
+
+    private static final class SliceStats {
+        long postgresRows;
+        long indexedDocs;
+        long missing;
+        long changed;
+        long extra;
+
+        void add(SliceStats other) {
+            postgresRows += other.postgresRows;
+            indexedDocs += other.indexedDocs;
+            missing += other.missing;
+            changed += other.changed;
+            extra += other.extra;
+        }
+    }
+}
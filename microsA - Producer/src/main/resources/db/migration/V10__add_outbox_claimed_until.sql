@@ -0,0 +1,4 @@
+-- Lote em publicação: o relay marca as linhas numa transação curta e só volta ao banco depois dos confirms.
+-- Até claimed_until as outras instâncias pulam essas linhas; se o relay cair no meio, elas voltam sozinhas
+ALTER TABLE product_outbox
+    ADD COLUMN claimed_until timestamptz;
@@ -0,0 +1,11 @@
+CREATE SEQUENCE product_outbox_seq INCREMENT BY 50;
+
+CREATE TABLE product_outbox (
+id           BIGINT PRIMARY KEY,
+aggregate_id UUID        NOT NULL,
+event_type   VARCHAR(16) NOT NULL,
+payload      TEXT        NOT NULL,
+attempts     INT         NOT NULL DEFAULT 0,
+last_error   TEXT,
+created_at   timestamptz NOT NULL DEFAULT now()
+);
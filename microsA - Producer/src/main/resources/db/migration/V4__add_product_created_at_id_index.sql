@@ -0,0 +1,3 @@
+-- Paginação keyset (created_at, id) em GET /products/page e streaming NDJSON
+CREATE INDEX idx_product_created_at_id
+    ON product_entity (created_at, id);
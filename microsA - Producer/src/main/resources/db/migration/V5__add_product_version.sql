@@ -0,0 +1,3 @@
+-- Versão otimista do produto; propagada nos eventos e usada como version_type=external no Elasticsearch
+ALTER TABLE product_entity
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
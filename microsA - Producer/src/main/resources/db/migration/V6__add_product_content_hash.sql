@@ -0,0 +1,35 @@
+-- Chave de duplicidade de tamanho fixo: MD5 (128 bits) de lower(btrim(name)) || chr(31) || lower(btrim(description)),
+-- guardado como UUID (16 bytes). O banco é a única definição: a coluna é gerada e o microsA só lê o valor.
+CREATE OR REPLACE FUNCTION product_content_hash(name TEXT, description TEXT)
+    RETURNS UUID
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE
+AS $$
+    SELECT md5(lower(btrim(name)) || chr(31) || lower(btrim(coalesce(description, ''))))::uuid
+$$;
+
+-- Calculada para as linhas existentes ao adicionar a coluna
+ALTER TABLE product_entity
+    ADD COLUMN content_hash UUID NOT NULL
+        GENERATED ALWAYS AS (product_content_hash(name, description)) STORED;
+
+-- A normalização (caixa/espaços nas pontas) pode revelar duplicatas que o UNIQUE (name, description) aceitava
+DO $$
+DECLARE
+    duplicates BIGINT;
+BEGIN
+    SELECT count(*) INTO duplicates
+    FROM (SELECT content_hash FROM product_entity GROUP BY content_hash HAVING count(*) > 1) d;
+
+    IF duplicates > 0 THEN
+        RAISE EXCEPTION '% grupos de produtos duplicados após normalizar name/description (lower + btrim); resolva antes de migrar', duplicates;
+    END IF;
+END $$;
+
+ALTER TABLE product_entity
+    ADD CONSTRAINT unique_content_hash UNIQUE (content_hash);
+
+-- O índice sobre (name, description TEXT) crescia com o tamanho da descrição
+ALTER TABLE product_entity
+    DROP CONSTRAINT unique_name_description;
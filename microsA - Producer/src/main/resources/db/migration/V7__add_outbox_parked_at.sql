@@ -0,0 +1,5 @@
+-- Linhas que esgotaram app.outbox.max-attempts ficam estacionadas para inspeção e saem da varredura do relay
+ALTER TABLE product_outbox
+    ADD COLUMN parked_at timestamptz;
+
+CREATE INDEX idx_product_outbox_pending ON product_outbox (id) WHERE parked_at IS NULL;
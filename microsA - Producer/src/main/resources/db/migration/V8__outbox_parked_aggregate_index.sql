@@ -0,0 +1,3 @@
+-- Linha estacionada segura os eventos seguintes do mesmo produto (ordem por produto):
+-- a varredura do relay consulta este índice para pular esses agregados
+CREATE INDEX idx_product_outbox_parked_aggregate ON product_outbox (aggregate_id) WHERE parked_at IS NOT NULL;
@@ -0,0 +1,7 @@
+-- Versão do produto carregada pelo evento: ordena os eventos de um mesmo produto no relay.
+-- O id vem de uma sequence com allocationSize 50 e, entre instâncias, não segue a ordem dos commits
+ALTER TABLE product_outbox
+    ADD COLUMN version BIGINT;
+
+UPDATE product_outbox
+SET version = (payload::jsonb ->> 'version')::bigint;
@@ -0,0 +1,33 @@
+package com.wekers.microsa;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * PostgreSQL 16 embarcado para os testes de repositório: as migrations rodam de verdade
+ * (funções, colunas geradas, ON CONFLICT).
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedPostgresConfig {
+
+    @Bean(destroyMethod = "close")
+    EmbeddedPostgres embeddedPostgres() throws IOException {
+        return start();
+    }
+
+    // também usado fora de um contexto Spring (ex.: primário + réplica no mesmo teste)
+    public static EmbeddedPostgres start() throws IOException {
+        return EmbeddedPostgres.builder()
+                .setLocaleConfig("encoding", "UTF8")
+                .start();
+    }
+
+    @Bean
+    DataSource dataSource(EmbeddedPostgres postgres) {
+        return postgres.getPostgresDatabase();
+    }
+}
@@ -0,0 +1,181 @@
+package com.wekers.microsa.config;
+
+import com.wekers.microsa.EmbeddedPostgresConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dois Postgres embarcados fazem o papel de primário e réplica; cada um responde com o próprio
+ * nome, então dá para ver para onde cada transação foi roteada.
+ * O atraso da réplica é simulado num banco à parte cujo search_path sobrepõe as funções de
+ * recovery/WAL usadas pelo monitor (schema explícito antes de pg_catalog tem precedência).
+ */
+class ReadReplicaRoutingDataSourceTest {
+
+    private static EmbeddedPostgres primaryServer;
+    private static EmbeddedPostgres replicaServer;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @BeforeAll
+    static void startServers() throws Exception {
+        primaryServer = EmbeddedPostgresConfig.start();
+        replicaServer = EmbeddedPostgresConfig.start();
+        markNode(primaryServer.getPostgresDatabase(), "primary");
+        markNode(replicaServer.getPostgresDatabase(), "replica");
+
+        JdbcTemplate replicaAdmin = new JdbcTemplate(replicaServer.getPostgresDatabase());
+        replicaAdmin.execute("CREATE DATABASE lagging");
+        replicaAdmin.execute("ALTER DATABASE lagging SET search_path = lagsim, pg_catalog, public");
+        JdbcTemplate lagging = new JdbcTemplate(replicaServer.getDatabase("postgres", "lagging"));
+        lagging.execute("CREATE SCHEMA lagsim");
+        lagging.execute("CREATE TABLE lagsim.replay_lag (lag interval NOT NULL)");
+        lagging.execute("INSERT INTO lagsim.replay_lag VALUES (interval '0')");
+        lagging.execute("CREATE FUNCTION lagsim.pg_is_in_recovery() RETURNS boolean"
+                + " LANGUAGE sql AS 'SELECT true'");
+        lagging.execute("CREATE FUNCTION lagsim.pg_last_wal_receive_lsn() RETURNS pg_lsn"
+                + " LANGUAGE sql AS 'SELECT ''0/2''::pg_lsn'");
+        lagging.execute("CREATE FUNCTION lagsim.pg_last_wal_replay_lsn() RETURNS pg_lsn"
+                + " LANGUAGE sql AS 'SELECT ''0/1''::pg_lsn'");
+        lagging.execute("CREATE FUNCTION lagsim.pg_last_xact_replay_timestamp() RETURNS timestamptz"
+                + " LANGUAGE sql AS 'SELECT now() - lag FROM lagsim.replay_lag'");
+    }
+
+    @AfterAll
+    static void stopServers() throws Exception {
+        if (replicaServer != null) {
+            replicaServer.close();
+        }
+        if (primaryServer != null) {
+            primaryServer.close();
+        }
+    }
+
+    private static void markNode(DataSource dataSource, String name) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE node (name text NOT NULL)");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+    }
+
+    @AfterEach
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+        pools.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplicaAndWritesToPrimary() {
+        Wiring wiring = wire("postgres", 5000);
+        wiring.health().check();
+        assertThat(wiring.health().isUsable()).isTrue();
+
+        assertThat(nodeIn(wiring.dataSource(), true)).isEqualTo("replica");
+        assertThat(nodeIn(wiring.dataSource(), false)).isEqualTo("primary");
+        // fora de transação não há flag readOnly: fica no primário
+        assertThat(new JdbcTemplate(wiring.dataSource()).queryForObject("SELECT name FROM node", String.class))
+                .isEqualTo("primary");
+    }
+
+    @Test
+    void readsStayOnPrimaryUntilTheFirstCheck() {
+        Wiring wiring = wire("postgres", 5000);
+
+        assertThat(nodeIn(wiring.dataSource(), true)).isEqualTo("primary");
+    }
+
+    @Test
+    void readFallsBackToPrimaryWhenReplicaConnectionFails() {
+        // a réplica passou na última verificação, mas a conexão falha na hora da leitura
+        Wiring wiring = wire("postgres", "does_not_exist", 5000);
+        ReplicaHealthMonitor health = wiring.health();
+        health.check();
+        assertThat(health.isUsable()).isTrue();
+
+        assertThat(nodeIn(wiring.dataSource(), true)).isEqualTo("primary");
+        assertThat(health.isUsable()).isFalse();
+        assertThat(health.health().getDetails()).containsKey("error");
+    }
+
+    @Test
+    void monitorTakesReplicaOutOfRotationPastMaxLag() {
+        Wiring wiring = wire("lagging", 5000);
+        ReplicaHealthMonitor health = wiring.health();
+        JdbcTemplate lag = new JdbcTemplate(replicaServer.getDatabase("postgres", "lagging"));
+
+        lag.update("UPDATE lagsim.replay_lag SET lag = interval '1 second'");
+        health.check();
+        assertThat(health.isUsable()).isTrue();
+        assertThat(health.health().getDetails()).containsEntry("lagMs", 1000L);
+
+        lag.update("UPDATE lagsim.replay_lag SET lag = interval '30 seconds'");
+        health.check();
+        assertThat(health.isUsable()).isFalse();
+        assertThat(nodeIn(wiring.dataSource(), true)).isEqualTo("primary");
+
+        // recuperou o atraso: volta para a rotação na verificação seguinte
+        lag.update("UPDATE lagsim.replay_lag SET lag = interval '0'");
+        health.check();
+        assertThat(health.isUsable()).isTrue();
+    }
+
+    private record Wiring(DataSource dataSource, ReplicaHealthMonitor health) {
+    }
+
+    private Wiring wire(String replicaDatabase, long maxLagMs) {
+        return wire(replicaDatabase, replicaDatabase, maxLagMs);
+    }
+
+    // monta os beans pelo próprio ReplicaDataSourceConfig; o monitor verifica checkedDatabase e o
+    // roteamento lê de routedDatabase (iguais, exceto para simular falha só na hora da leitura)
+    private Wiring wire(String checkedDatabase, String routedDatabase, long maxLagMs) {
+        DataSourceProperties primaryProperties = new DataSourceProperties();
+        primaryProperties.setUrl(primaryServer.getJdbcUrl("postgres", "postgres"));
+        primaryProperties.setUsername("postgres");
+        ReplicaDataSourceConfig config = new ReplicaDataSourceConfig();
+
+        HikariDataSource primaryPool = pool(config.primaryDataSource(primaryProperties));
+        ReplicaProperties checked = replicaProperties(checkedDatabase, maxLagMs);
+        HikariDataSource checkedPool = pool(config.replicaDataSource(primaryProperties, checked));
+        HikariDataSource routedPool = routedDatabase.equals(checkedDatabase)
+                ? checkedPool
+                : pool(config.replicaDataSource(primaryProperties, replicaProperties(routedDatabase, maxLagMs)));
+
+        ReplicaHealthMonitor health = config.replicaHealthMonitor(checkedPool, checked);
+        return new Wiring(config.dataSource(primaryPool, routedPool, health), health);
+    }
+
+    private static ReplicaProperties replicaProperties(String database, long maxLagMs) {
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setEnabled(true);
+        properties.setUrl(replicaServer.getJdbcUrl("postgres", database));
+        properties.setMaxLagMs(maxLagMs);
+        return properties;
+    }
+
+    private HikariDataSource pool(HikariDataSource dataSource) {
+        pools.add(dataSource);
+        return dataSource;
+    }
+
+    private static String nodeIn(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        tx.setReadOnly(readOnly);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        return tx.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+}
@@ -0,0 +1,102 @@
+package com.wekers.microsa.repository;
+
+import com.wekers.microsa.EmbeddedPostgresConfig;
+import com.wekers.microsa.entity.ProductEntity;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * content_hash é coluna gerada: o banco é a única definição da chave de duplicidade.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresConfig.class)
+class ProductJpaRepositoryTest {
+
+    private static final BigDecimal PRICE = new BigDecimal("10.00");
+
+    @Autowired
+    private ProductJpaRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void insertIfAbsentReadsTheGeneratedKeyBack() {
+        Optional<ProductEntity> saved = repository.insertIfAbsent("ΟΔΟΣ İstanbul", "Descrição", PRICE);
+
+        assertThat(saved).isPresent();
+        assertThat(saved.get().getContentHash()).isEqualTo(storedHash(saved.get().getId()));
+    }
+
+    @Test
+    void insertIfAbsentReturnsEmptyForNormalizedDuplicate() {
+        assertThat(repository.insertIfAbsent("Cafe", "Torra Media", PRICE)).isPresent();
+
+        assertThat(repository.insertIfAbsent("  CAFE ", "torra media ", PRICE)).isEmpty();
+    }
+
+    @Test
+    void contentHashesOfMatchesTheGeneratedColumnInItemOrder() {
+        UUID stored = repository.insertIfAbsent("Notebook", "Gamer", PRICE).orElseThrow().getContentHash();
+
+        List<UUID> hashes = repository.contentHashesOf(
+                new String[]{"Mouse", "notebook ", "Mouse"},
+                new String[]{"Sem fio", " GAMER", "Sem fio"});
+
+        assertThat(hashes).hasSize(3);
+        assertThat(hashes.get(1)).isEqualTo(stored);
+        assertThat(hashes.get(0)).isEqualTo(hashes.get(2)).isNotEqualTo(stored);
+    }
+
+    @Test
+    void batchInsertCarriesTheSameKeyTheDatabaseGenerates() {
+        List<ProductEntity> entities = List.of(product("Teclado", "Mecânico"), product("Monitor", "4K"));
+
+        repository.assignContentHashes(entities);
+        repository.saveAll(entities);
+        entityManager.flush();
+
+        for (ProductEntity entity : entities) {
+            assertThat(entity.getContentHash()).isNotNull().isEqualTo(storedHash(entity.getId()));
+        }
+    }
+
+    @Test
+    void updateReadsTheRegeneratedKeyBack() {
+        ProductEntity entity = product("Cadeira", "Gamer");
+        repository.assignContentHashes(List.of(entity));
+        repository.saveAndFlush(entity);
+        UUID before = entity.getContentHash();
+
+        entity.setName("Cadeira de escritório");
+        entityManager.flush();
+
+        assertThat(entity.getContentHash()).isNotEqualTo(before).isEqualTo(storedHash(entity.getId()));
+    }
+
+    private UUID storedHash(UUID id) {
+        return (UUID) entityManager.createNativeQuery("SELECT content_hash FROM product_entity WHERE id = :id")
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    private static ProductEntity product(String name, String description) {
+        ProductEntity entity = new ProductEntity();
+        entity.setName(name);
+        entity.setDescription(description);
+        entity.setPrice(PRICE);
+        return entity;
+    }
+}
@@ -0,0 +1,146 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wekers.microsa.config.OutboxProperties;
+import com.wekers.microsa.dto.ProductEventType;
+import com.wekers.microsa.entity.OutboxEventEntity;
+import com.wekers.microsa.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Coalescência do relay: deltas mesclados com a baseVersion do mais antigo, janela de retenção
+ * e DELETED superando UPDATED.
+ */
+class OutboxRelayCoalesceTest {
+
+    private static final long WINDOW_MS = 60_000;
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final ProductProducer producer = mock(ProductProducer.class);
+    private final OutboxProperties properties = new OutboxProperties();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<OutboxEventEntity> published = new ArrayList<>();
+    private final List<OutboxEventEntity> deleted = new ArrayList<>();
+    private OutboxRelay relay;
+    private long nextId = 1;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties.setCoalesceWindowMs(WINDOW_MS);
+        properties.setConfirmTimeoutMs(1000);
+        properties.setBatchSize(10);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+        doAnswer(inv -> deleted.addAll((Collection<OutboxEventEntity>) inv.getArgument(0)))
+                .when(repository).deleteAllInBatch(any());
+        when(producer.publish(any())).thenAnswer(inv -> {
+            published.add(inv.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        relay = new OutboxRelay(repository, producer, properties, transactionTemplate, objectMapper,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void mergedDeltaKeepsTheOldestBaseVersionAndTheNewestFields() throws Exception {
+        UUID id = UUID.randomUUID();
+        Instant closed = Instant.now().minusMillis(2 * WINDOW_MS);
+        OutboxEventEntity v2 = update(id, 2, 1, "{\"price\":10.00}", closed);
+        OutboxEventEntity v3 = update(id, 3, 2, "{\"name\":\"Mouse\"}", closed);
+        OutboxEventEntity v4 = update(id, 4, 3, "{\"price\":12.50}", closed);
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(v2, v3, v4));
+
+        relay.relayBatch();
+
+        assertThat(published).containsExactly(v4);
+        JsonNode payload = objectMapper.readTree(v4.getPayload());
+        assertThat(payload.get("baseVersion").asLong()).isEqualTo(1);
+        assertThat(payload.get("version").asLong()).isEqualTo(4);
+        assertThat(payload.get("name").asText()).isEqualTo("Mouse");
+        assertThat(payload.get("price").decimalValue()).isEqualByComparingTo("12.50");
+        assertThat(deleted).containsExactlyInAnyOrder(v2, v3, v4);
+    }
+
+    @Test
+    void updatesInsideTheWindowAreHeldAndTheirClaimReleased() {
+        UUID held = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        OutboxEventEntity first = update(held, 2, 1, "{\"price\":10.00}", Instant.now());
+        OutboxEventEntity second = update(held, 3, 2, "{\"price\":11.00}", Instant.now());
+        OutboxEventEntity created = event(other, ProductEventType.CREATED, 1, "{}", Instant.now());
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(first, created, second));
+
+        relay.relayBatch();
+
+        assertThat(published).containsExactly(created);
+        assertThat(deleted).containsExactly(created);
+        verify(repository).releaseClaims(List.of(first.getId(), second.getId()));
+    }
+
+    @Test
+    void fullBatchClosesTheWindow() {
+        properties.setBatchSize(2);
+        UUID id = UUID.randomUUID();
+        OutboxEventEntity first = update(id, 2, 1, "{\"price\":10.00}", Instant.now());
+        OutboxEventEntity second = update(id, 3, 2, "{\"price\":11.00}", Instant.now());
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(first, second));
+
+        int relayed = relay.relayBatch();
+
+        assertThat(published).containsExactly(second);
+        assertThat(relayed).isEqualTo(2);
+    }
+
+    @Test
+    void deletedSupersedesEarlierUpdatesAndIsPublishedUnchanged() {
+        UUID id = UUID.randomUUID();
+        OutboxEventEntity update = update(id, 2, 1, "{\"price\":10.00}", Instant.now());
+        OutboxEventEntity delete = event(id, ProductEventType.DELETED, 3,
+                "{\"id\":\"" + id + "\",\"version\":3}", Instant.now());
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(update, delete));
+
+        relay.relayBatch();
+
+        assertThat(published).containsExactly(delete);
+        assertThat(delete.getPayload()).isEqualTo("{\"id\":\"" + id + "\",\"version\":3}");
+        assertThat(deleted).containsExactlyInAnyOrder(update, delete);
+    }
+
+    private OutboxEventEntity update(UUID id, long version, long baseVersion, String fields, Instant createdAt) {
+        String payload = fields.substring(0, fields.length() - 1)
+                + ",\"id\":\"" + id + "\",\"version\":" + version + ",\"baseVersion\":" + baseVersion + "}";
+        return event(id, ProductEventType.UPDATED, version, payload, createdAt);
+    }
+
+    private OutboxEventEntity event(UUID id, ProductEventType type, long version, String payload, Instant createdAt) {
+        OutboxEventEntity event = new OutboxEventEntity(id, type, version, payload);
+        ReflectionTestUtils.setField(event, "id", nextId++);
+        ReflectionTestUtils.setField(event, "createdAt", createdAt);
+        return event;
+    }
+}
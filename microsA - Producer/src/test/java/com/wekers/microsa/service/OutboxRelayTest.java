@@ -0,0 +1,173 @@
+package com.wekers.microsa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wekers.microsa.config.OutboxProperties;
+import com.wekers.microsa.dto.ProductEventType;
+import com.wekers.microsa.entity.OutboxEventEntity;
+import com.wekers.microsa.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Broker fora não conta tentativa (pausa com backoff); só a recusa do broker estaciona a linha.
+ */
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final ProductProducer producer = mock(ProductProducer.class);
+    private final OutboxProperties properties = new OutboxProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<OutboxEventEntity> deleted = new ArrayList<>();
+    private OutboxRelay relay;
+    private long nextId = 1;
+    private boolean inTransaction;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties.setCoalesceWindowMs(0);
+        properties.setConfirmTimeoutMs(1000);
+        properties.setMaxAttempts(2);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> {
+            inTransaction = true;
+            try {
+                return ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
+        doAnswer(inv -> deleted.addAll((Collection<OutboxEventEntity>) inv.getArgument(0)))
+                .when(repository).deleteAllInBatch(any());
+
+        relay = new OutboxRelay(repository, producer, properties, transactionTemplate, new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void rejectedEventCountsAttemptsAndParksAtMaxAttempts() {
+        OutboxEventEntity event = event(UUID.randomUUID(), ProductEventType.CREATED, 1);
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(event));
+        when(producer.publish(event)).thenReturn(rejected());
+
+        relay.relayBatch();
+        assertThat(event.getAttempts()).isEqualTo(1);
+        assertThat(event.getParkedAt()).isNull();
+
+        relay.relayBatch();
+        assertThat(event.getAttempts()).isEqualTo(2);
+        assertThat(event.getParkedAt()).isNotNull();
+        assertThat(meterRegistry.counter("outbox.events.parked").count()).isEqualTo(1.0);
+        assertThat(deleted).isEmpty();
+    }
+
+    @Test
+    void brokerOutageDoesNotCountAttemptsAndPausesTheRelay() {
+        OutboxEventEntity event = event(UUID.randomUUID(), ProductEventType.CREATED, 1);
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(event));
+        when(producer.publish(event)).thenReturn(CompletableFuture.failedFuture(new AmqpException("connection refused")));
+
+        relay.relay();
+        relay.relay(); // ainda dentro do backoff: nem trava o próximo lote
+
+        assertThat(event.getAttempts()).isZero();
+        assertThat(event.getParkedAt()).isNull();
+        assertThat(event.getLastError()).isEqualTo("connection refused");
+        verify(repository, times(1)).lockNextBatch(anyInt());
+        assertThat(deleted).isEmpty();
+    }
+
+    @Test
+    void confirmedEventBehindAFailedEventOfTheSameProductIsKept() {
+        UUID failing = UUID.randomUUID();
+        UUID healthy = UUID.randomUUID();
+        OutboxEventEntity created = event(failing, ProductEventType.CREATED, 1);
+        OutboxEventEntity other = event(healthy, ProductEventType.CREATED, 1);
+        OutboxEventEntity updated = event(failing, ProductEventType.UPDATED, 2);
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(created, other, updated));
+        when(producer.publish(created)).thenReturn(rejected());
+        when(producer.publish(other)).thenReturn(CompletableFuture.completedFuture(null));
+        when(producer.publish(updated)).thenReturn(CompletableFuture.completedFuture(null));
+
+        int relayed = relay.relayBatch();
+
+        assertThat(relayed).isZero();
+        assertThat(deleted).containsExactly(other);
+        assertThat(updated.getAttempts()).isZero();
+    }
+
+    @Test
+    void publishesOutsideTheClaimTransactionAndReleasesWhatIsKept() {
+        OutboxEventEntity confirmed = event(UUID.randomUUID(), ProductEventType.CREATED, 1);
+        OutboxEventEntity failed = event(UUID.randomUUID(), ProductEventType.CREATED, 1);
+        List<Boolean> publishedInTransaction = new ArrayList<>();
+        when(repository.lockNextBatch(anyInt())).thenReturn(List.of(confirmed, failed));
+        when(producer.publish(any())).thenAnswer(inv -> {
+            publishedInTransaction.add(inTransaction);
+            return inv.getArgument(0) == confirmed ? CompletableFuture.completedFuture(null) : rejected();
+        });
+
+        relay.relayBatch();
+
+        assertThat(publishedInTransaction).containsExactly(false, false);
+        verify(repository).claim(eq(List.of(confirmed.getId(), failed.getId())), any());
+        assertThat(deleted).containsExactly(confirmed);
+        verify(repository).saveAll(List.of(failed));
+        verify(repository).releaseClaims(List.of(failed.getId()));
+    }
+
+    @Test
+    void parkedRowsGaugeReadsTheCountCachedByTheReleaseCheck() {
+        when(repository.countByParkedAtIsNotNull()).thenReturn(3L);
+
+        assertThat(meterRegistry.get("outbox.events.parked.rows").gauge().value()).isZero();
+        relay.releaseExpiredParked();
+
+        assertThat(meterRegistry.get("outbox.events.parked.rows").gauge().value()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("outbox.events.parked.rows").gauge().value()).isEqualTo(3.0);
+        verify(repository, times(1)).countByParkedAtIsNotNull();
+    }
+
+    @Test
+    void inVersionOrderSortsEachProductKeepingItsSlots() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        // ids de blocos da sequence: a v2 ganhou id menor que a v1
+        OutboxEventEntity aV2 = event(a, ProductEventType.UPDATED, 2);
+        OutboxEventEntity bV1 = event(b, ProductEventType.CREATED, 1);
+        OutboxEventEntity aV1 = event(a, ProductEventType.CREATED, 1);
+
+        assertThat(OutboxRelay.inVersionOrder(List.of(aV2, bV1, aV1))).containsExactly(aV1, bV1, aV2);
+    }
+
+    private OutboxEventEntity event(UUID aggregateId, ProductEventType type, long version) {
+        OutboxEventEntity event = new OutboxEventEntity(aggregateId, type, version, "{}");
+        ReflectionTestUtils.setField(event, "id", nextId++);
+        return event;
+    }
+
+    private static CompletableFuture<Void> rejected() {
+        return CompletableFuture.failedFuture(new ConfirmWindowPublisher.RejectedException("nack"));
+    }
+}
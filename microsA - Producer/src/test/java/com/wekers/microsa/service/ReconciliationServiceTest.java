@@ -0,0 +1,132 @@
+package com.wekers.microsa.service;
+
+import com.wekers.microsa.config.ReconciliationProperties;
+import com.wekers.microsa.dto.ProductDeletedEvent;
+import com.wekers.microsa.dto.ReconciliationReport;
+import com.wekers.microsa.entity.ProductEntity;
+import com.wekers.microsa.repository.ProductJpaRepository;
+import com.wekers.microsa.repository.ProductJpaRepository.ProductView;
+import com.wekers.microsa.service.ProductIndexClient.IndexedProduct;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Merge-join de uma fatia: páginas do Postgres e do índice em ordem de id, atravessando
+ * as bordas de página dos dois lados.
+ */
+class ReconciliationServiceTest {
+
+    private static final UUID MISSING = UUID.fromString("10000000-0000-0000-0000-000000000001");
+    private static final UUID SAME = UUID.fromString("20000000-0000-0000-0000-000000000002");
+    private static final UUID CHANGED = UUID.fromString("30000000-0000-0000-0000-000000000003");
+    private static final UUID EXTRA = UUID.fromString("40000000-0000-0000-0000-000000000004");
+    private static final UUID LAST = UUID.fromString("50000000-0000-0000-0000-000000000005");
+
+    private final ProductJpaRepository repository = mock(ProductJpaRepository.class);
+    private final ProductIndexClient index = mock(ProductIndexClient.class);
+    private final OutboxService outbox = mock(OutboxService.class);
+    private final ReconciliationProperties properties = new ReconciliationProperties();
+    private ReconciliationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties.setSlices(1);
+        properties.setPageSize(2);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // Postgres: [MISSING, SAME] [CHANGED, LAST]
+        when(repository.findIdRangeFirstPage(any(), any(), any()))
+                .thenReturn(List.of(row(MISSING, "10.00"), row(SAME, "20.00")));
+        when(repository.findIdRangePageAfter(eq(SAME), any(), any()))
+                .thenReturn(List.of(row(CHANGED, "30.00"), row(LAST, "50.00")));
+
+        // índice: [SAME, CHANGED(preço velho)] [EXTRA, LAST]
+        when(index.page(any(), any(), isNull(), anyInt()))
+                .thenReturn(List.of(doc(SAME, "20.0", 3), doc(CHANGED, "29.90", 3)));
+        when(index.page(any(), any(), eq(CHANGED.toString()), anyInt()))
+                .thenReturn(List.of(doc(EXTRA, "40.00", 7), doc(LAST, "50", 1)));
+
+        service = new ReconciliationService(repository, index, outbox, properties, transactionTemplate);
+    }
+
+    @Test
+    void dryRunCountsMissingChangedAndExtraAcrossPageBorders() {
+        ReconciliationReport report = service.run(true);
+
+        assertThat(report.postgresRows()).isEqualTo(4);
+        assertThat(report.indexedDocs()).isEqualTo(4);
+        assertThat(report.missing()).isEqualTo(1);
+        assertThat(report.changed()).isEqualTo(1);
+        assertThat(report.extra()).isEqualTo(1);
+        verify(outbox, never()).enqueueCreated(any());
+        verify(repository, never()).bumpVersions(any());
+    }
+
+    @Test
+    void correctionsAreEnqueuedThroughTheOutbox() {
+        ProductEntity missing = new ProductEntity();
+        ProductEntity changed = new ProductEntity();
+        when(repository.findAllById(List.of(MISSING))).thenReturn(List.of(missing));
+        when(repository.findAllById(List.of(CHANGED))).thenReturn(List.of(changed));
+        List<UUID> bumped = new ArrayList<>();
+        doAnswer(inv -> {
+            bumped.addAll(inv.getArgument(0)); // a lista de correções é reaproveitada depois do flush
+            return bumped.size();
+        }).when(repository).bumpVersions(any());
+
+        service.run(false);
+
+        verify(outbox).enqueueCreated(missing);
+        assertThat(bumped).containsExactly(CHANGED);
+        verify(outbox).enqueueUpdated(changed);
+        // EXTRA não existe mais no Postgres: DELETED acima da versão indexada
+        verify(outbox).enqueueDeleted(argThat((ProductDeletedEvent e) -> e.id().equals(EXTRA) && e.version() == 8));
+    }
+
+    private static ProductView row(UUID id, String price) {
+        return new ProductView() {
+            public UUID getId() { return id; }
+            public String getName() { return "Produto " + id; }
+            public String getDescription() { return "Descrição"; }
+            public BigDecimal getPrice() { return new BigDecimal(price); }
+            public UUID getContentHash() { return hash(id); }
+            public Instant getCreatedAt() { return Instant.EPOCH; }
+        };
+    }
+
+    private static IndexedProduct doc(UUID id, String price, long version) {
+        return new IndexedProduct(id.toString(), "Produto " + id, "Descrição", new BigDecimal(price),
+                hash(id).toString(), version);
+    }
+
+    private static UUID hash(UUID id) {
+        return new UUID(id.getLeastSignificantBits(), id.getMostSignificantBits());
+    }
+}
@@ -0,0 +1,33 @@
+#!/bin/bash
+
+set -e
+
+ES_URL="http://localhost:9200"
+INDEX="products_write"
+
+# ======================================================
+# Carga em massa: sem refresh periódico durante a carga
+#   sh scripts/bulk-load-mode.sh on    -> refresh_interval=-1
+#   sh scripts/bulk-load-mode.sh off   -> volta ao padrão (1s) + refresh imediato
+# ======================================================
+case "$1" in
+  on)
+    echo "⏸ Desligando refresh periódico de $INDEX..."
+    curl -s -X PUT "$ES_URL/$INDEX/_settings" \
+      -H "Content-Type: application/json" \
+      -d '{ "index": { "refresh_interval": "-1" } }' > /dev/null
+    echo "✅ refresh_interval=-1 (escritas só ficam visíveis após 'off')"
+    ;;
+  off)
+    echo "▶ Restaurando refresh periódico de $INDEX..."
+    curl -s -X PUT "$ES_URL/$INDEX/_settings" \
+      -H "Content-Type: application/json" \
+      -d '{ "index": { "refresh_interval": null } }' > /dev/null
+    curl -s -X POST "$ES_URL/$INDEX/_refresh" > /dev/null
+    echo "✅ refresh_interval padrão restaurado e índice atualizado"
+    ;;
+  *)
+    echo "Uso: $0 on|off"
+    exit 1
+    ;;
+esac
@@ -27,28 +27,38 @@ NEW_INDEX="${INDEX_BASE}_v${NEXT_VERSION}"
 echo "📄 Índice atual: $CURRENT_INDEX"
 echo "🚀 Criando novo índice: $NEW_INDEX"
 
+if [[ ! -f "$SETTINGS_FILE" ]]; then
+  echo "❌ Mapping não encontrado:"
+  echo "   $SETTINGS_FILE"
+  exit 1
+fi
+
 # ======================================================
 # 1) Criar índice com settings básicos
 # ======================================================
+# gc_deletes: por quanto tempo o tombstone de um DELETE versionado barra eventos velhos.
+# Precisa durar mais que todas as faixas de retry somadas (ver product-settings.json)
+GC_DELETES=$(jq -r '.settings.index.gc_deletes' "$SETTINGS_FILE")
+
 curl -s -X PUT "$ES_URL/$NEW_INDEX" \
   -H "Content-Type: application/json" \
-  -d '{
-    "settings": {
-      "number_of_shards": 1,
-      "number_of_replicas": 0
+  -d "{
+    \"settings\": {
+      \"number_of_shards\": 1,
+      \"number_of_replicas\": 0,
+      \"index.gc_deletes\": \"$GC_DELETES\"
     }
-  }' > /dev/null
+  }" > /dev/null
 echo ""
 
+# o índice atual continua recebendo escritas até a troca de alias: mesmo tombstone nele
+curl -s -X PUT "$ES_URL/$CURRENT_INDEX/_settings" \
+  -H "Content-Type: application/json" \
+  -d "{ \"index.gc_deletes\": \"$GC_DELETES\" }" > /dev/null
+
 # ======================================================
 # 2) Aplicar mapping completo
 # ======================================================
-if [[ ! -f "$SETTINGS_FILE" ]]; then
-  echo "❌ Mapping não encontrado:"
-  echo "   $SETTINGS_FILE"
-  exit 1
-fi
-
 echo "📦 Aplicando mapping completo..."
 curl -s -X PUT "$ES_URL/$NEW_INDEX/_mapping" \
   -H "Content-Type: application/json" \
@@ -0,0 +1,31 @@
+package com.wekers.microsb.bench;
+
+import com.wekers.microsb.dto.ProductCreatedEvent;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// eventos com o formato do que o microsA publica (nome do seed com sufixo hexadecimal)
+final class BenchEvents {
+
+    static final String SHORT_DESCRIPTION =
+            "Notebook com processador de 8 núcleos, 16 GB de RAM e SSD NVMe de 512 GB.";
+
+    // ~2 KB: descrição de catálogo completa (o caso em que o gzip do producer entra)
+    static final String LONG_DESCRIPTION = (SHORT_DESCRIPTION
+            + " Tela de 15,6 polegadas com taxa de atualização de 144 Hz, teclado retroiluminado RGB,"
+            + " placa de vídeo dedicada com 8 GB, Wi-Fi 6, Bluetooth 5.2 e bateria de 90 Wh. ").repeat(8);
+
+    private BenchEvents() {
+    }
+
+    static ProductCreatedEvent created(String description) {
+        return new ProductCreatedEvent(
+                UUID.fromString("5f0c6a8e-2b1d-4c3e-9f7a-1d2e3f4a5b6c"),
+                "Notebook Gamer Pro 15 a1b2c3",
+                description,
+                new BigDecimal("7499.90"),
+                UUID.fromString("0e8f2c1a-7b3d-4e5f-8a9b-0c1d2e3f4a5b"),
+                1L);
+    }
+}
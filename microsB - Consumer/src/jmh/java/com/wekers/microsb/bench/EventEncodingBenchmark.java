@@ -0,0 +1,92 @@
+package com.wekers.microsb.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.service.EventDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formatos do exchange de produtos: bytes por evento e custo de decodificação no consumer.
+ *
+ * O corpo é gerado como o ProductEventEncoder do microsA gera (JSON ou Smile, gzip opcional) e
+ * decodificado pelo {@link EventDecoder}. O tamanho de cada combinação sai no log do setup
+ * ("# bytes/event"); o tempo, na tabela do JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventEncodingBenchmark {
+
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"none", "gzip"})
+    public String compression;
+
+    @Param({"short", "long"})
+    public String description;
+
+    private EventDecoder decoder;
+    private Message message;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
+        SmileMapper smileMapper = SmileMapper.builder().findAndAddModules().build();
+        decoder = new EventDecoder(jsonMapper);
+
+        ProductCreatedEvent event = BenchEvents.created(
+                "long".equals(description) ? BenchEvents.LONG_DESCRIPTION : BenchEvents.SHORT_DESCRIPTION);
+
+        MessageProperties props = new MessageProperties();
+        byte[] body;
+        if ("smile".equals(format)) {
+            body = smileMapper.writeValueAsBytes(event);
+            props.setContentType(EventDecoder.CONTENT_TYPE_SMILE);
+        } else {
+            body = jsonMapper.writeValueAsBytes(event);
+            props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        }
+        if ("gzip".equals(compression)) {
+            body = gzip(body);
+            props.setContentEncoding(EventDecoder.CONTENT_ENCODING_GZIP);
+        }
+        message = new Message(body, props);
+
+        System.out.printf("%n# bytes/event [%s, %s, %s]: %d%n", format, compression, description, body.length);
+    }
+
+    @Benchmark
+    public ProductCreatedEvent decode() throws IOException {
+        return decoder.decode(message, ProductCreatedEvent.class);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,18 @@
+package com.wekers.microsb.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.elasticsearch.breaker")
+public class CircuitBreakerProperties {
+    private boolean enabled = true;
+    private int failureThreshold = 5;     // falhas de disponibilidade seguidas que abrem o circuito
+    private long probeInitialMs = 1000;   // primeira verificação de saúde após abrir
+    private long probeMaxMs = 30000;      // backoff dobra a cada verificação sem sucesso, até aqui
+    private String probeIndex = "products_write";
+}
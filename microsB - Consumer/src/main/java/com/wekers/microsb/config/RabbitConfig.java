@@ -1,6 +1,7 @@
 package com.wekers.microsb.config;
 
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.DirectRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.context.annotation.Bean;
@@ -21,4 +22,41 @@ public class RabbitConfig {
         factory.setMessageConverter(new SimpleMessageConverter());
         return factory;
     }
+
+    // Filas particionadas: um consumer (canal) por fila; canais diferentes processam em paralelo,
+    // e dentro de cada fila a entrega segue em ordem
+    @Bean
+    public DirectRabbitListenerContainerFactory partitionListenerFactory(
+            ConnectionFactory connectionFactory,
+            RabbitMQProperties properties
+    ) {
+        DirectRabbitListenerContainerFactory factory = new DirectRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConsumersPerQueue(1);
+        factory.setPrefetchCount(properties.getPartitions().getPrefetch());
+        factory.setMessageConverter(new SimpleMessageConverter());
+        return factory;
+    }
+
+    // Modo lote: o container junta até batch.size mensagens (ou o que chegou até o receive timeout)
+    // e entrega a lista de uma vez; o listener faz um único _bulk e um único ack
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerFactory(
+            ConnectionFactory connectionFactory,
+            RabbitMQProperties properties
+    ) {
+        RabbitMQProperties.Batch batch = properties.getBatch();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batch.getSize());
+        factory.setReceiveTimeout(batch.getReceiveTimeoutMs());
+        factory.setPrefetchCount(batch.getSize());
+        factory.setConcurrentConsumers(batch.getConsumers());
+        factory.setMessageConverter(new SimpleMessageConverter());
+        return factory;
+    }
 }
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Getter
 @Setter
 @Configuration
@@ -14,11 +17,14 @@ public class RabbitMQProperties {
     private Exchanges exchanges = new Exchanges();
     private RoutingKeys routingKeys = new RoutingKeys();
     private RetryConfig retry = new RetryConfig();
+    private Partitions partitions = new Partitions();
+    private Batch batch = new Batch();
+    private Lanes lanes = new Lanes();
+    private Adaptive adaptive = new Adaptive();
 
     @Getter
     @Setter
     public static class Queues {
-        private String retry5s;
         private String dead;
         private String deleted;
         private String created;
@@ -30,6 +36,7 @@ public class RabbitMQProperties {
     public static class Exchanges {
         private String main;
         private String dlx;
+        private String retry = "products.retry"; // headers exchange das filas de backoff
     }
 
     @Getter
@@ -37,7 +44,6 @@ public class RabbitMQProperties {
     public static class RoutingKeys {
         private String created;
         private String updated;
-        private String retry5s;
         private String dead;
         private String deleted;
     }
@@ -45,7 +51,127 @@ public class RabbitMQProperties {
     @Getter
     @Setter
     public static class RetryConfig {
-        private int maxAttempts;
-        private long retryDelayMs;
+        private int maxAttempts = 4;
+        // tentativa n espera backoffMs[n] (a última faixa se repete); cada faixa é uma fila com TTL
+        private List<Long> backoffMs = new ArrayList<>(List.of(1_000L, 5_000L, 30_000L, 300_000L));
+        private double jitter = 0.2;             // até 20% a menos de espera, espalhando os replays
+        private int jitterSlots = 4;             // filas por faixa, com TTL escalonado de 100% a (1 - jitter)
+        private String queuePrefix = "products.retry.backoff";
+
+        public long backoffFor(int attempt) {
+            return backoffMs.get(Math.min(attempt, backoffMs.size() - 1));
+        }
+
+        // tempo máximo entre a primeira falha e o último replay: o tombstone de um DELETE no ES
+        // (index.gc_deletes) precisa durar mais que isso, senão o replay recria o produto apagado
+        public long retryWindowMs() {
+            long total = 0;
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                total += backoffFor(attempt);
+            }
+            return total;
+        }
+
+        public int slots() {
+            return jitter > 0 ? Math.max(1, jitterSlots) : 1;
+        }
+
+        // slot 0 espera a faixa inteira; o último, faixa * (1 - jitter)
+        public long slotDelay(long tierMs, int slot) {
+            int slots = slots();
+            return slots == 1 ? tierMs : tierMs - Math.round(tierMs * jitter * slot / (slots - 1));
+        }
+
+        // valor do header x-retry-tier: "5s", "5s.j1", "5s.j2"...
+        public static String slotName(long tierMs, int slot) {
+            return slot == 0 ? tierName(tierMs) : tierName(tierMs) + ".j" + slot;
+        }
+
+        // 1000 => 1s, 300000 => 5m
+        public static String tierName(long delayMs) {
+            if (delayMs % 60_000 == 0) return (delayMs / 60_000) + "m";
+            if (delayMs % 1_000 == 0) return (delayMs / 1_000) + "s";
+            return delayMs + "ms";
+        }
+
+        public String queueName(long tierMs, int slot) {
+            return queuePrefix + "." + slotName(tierMs, slot) + ".queue";
+        }
+
+        public List<String> queueNames() {
+            List<String> names = new ArrayList<>(backoffMs.size() * slots());
+            for (long tierMs : backoffMs) {
+                for (int slot = 0; slot < slots(); slot++) {
+                    names.add(queueName(tierMs, slot));
+                }
+            }
+            return names;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Partitions {
+        private boolean enabled;
+        private int count = 8;                              // precisa ser o mesmo no microsA
+        private String routingKeyPrefix = "products.partition";
+        private int prefetch = 50;
+
+        public String queueName(int partition) {
+            return routingKeyPrefix + "." + partition + ".queue";
+        }
+
+        // products.partition.{n}.* => created, updated e deleted do mesmo id na mesma fila
+        public String bindingPattern(int partition) {
+            return routingKeyPrefix + "." + partition + ".*";
+        }
+
+        public String[] queueNames() {
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = queueName(i);
+            }
+            return names;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        private boolean enabled;
+        private int size = 500;             // mensagens por lote (um _bulk)
+        private long receiveTimeoutMs = 200; // sem mensagem nova nesse prazo => lote parcial segue
+        private int consumers = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class Lanes {
+        private boolean enabled;
+        private int count = 16;           // lanes (virtual threads) com ordem por id
+        private int queueCapacity = 256;  // mensagens esperando por lane; cheio => listener bloqueia
+    }
+
+    @Getter
+    @Setter
+    public static class Adaptive {
+        private boolean enabled;
+        private int min = 2;                 // mensagens em processamento ao mesmo tempo (todas as lanes)
+        private int max = 64;
+        private int initial = 8;
+        private long targetLatencyMs = 200;  // acima disso (média por mensagem) a janela encolhe
+        private int increaseStep = 2;        // aumento aditivo por ciclo
+        private double decreaseFactor = 0.5; // redução multiplicativa em 429 / latência alta
+        private long intervalMs = 5000;
+        private long backlogThreshold = 100; // só cresce com fila acumulada
+    }
+
+    // Filas de ingestão: as filas por tipo e, com partições, também as particionadas
+    public String[] ingestQueueNames() {
+        List<String> names = new ArrayList<>(List.of(queues.getCreated(), queues.getUpdated(), queues.getDeleted()));
+        if (partitions.isEnabled()) {
+            names.addAll(List.of(partitions.queueNames()));
+        }
+        return names.toArray(String[]::new);
     }
-}
\ No newline at end of file
+}
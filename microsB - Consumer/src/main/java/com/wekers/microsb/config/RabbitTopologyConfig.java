@@ -2,13 +2,19 @@ package com.wekers.microsb.config;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.core.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @RequiredArgsConstructor
 public class RabbitTopologyConfig {
 
+    public static final String RETRY_TIER_HEADER = "x-retry-tier";
+
     private final RabbitMQProperties properties;
 
     // ============================================================
@@ -24,6 +30,11 @@ public class RabbitTopologyConfig {
         return new DirectExchange(properties.getExchanges().getDlx(), true, false);
     }
 
+    @Bean
+    public HeadersExchange productRetryExchange() {
+        return new HeadersExchange(properties.getExchanges().getRetry(), true, false);
+    }
+
     // ============================================================
     // QUEUES
     // ============================================================
@@ -42,15 +53,6 @@ public class RabbitTopologyConfig {
         return QueueBuilder.durable(properties.getQueues().getDeleted()).build();
     }
 
-    @Bean
-    public Queue retryQueue() {
-        return QueueBuilder.durable(properties.getQueues().getRetry5s())
-                .withArgument("x-message-ttl", properties.getRetry().getRetryDelayMs())
-                .withArgument("x-dead-letter-exchange", properties.getExchanges().getMain())
-                .withArgument("x-dead-letter-routing-key", properties.getRoutingKeys().getCreated())
-                .build();
-    }
-
     @Bean
     public Queue deadQueue() {
         long TTL_14_DIAS = 14L * 24 * 60 * 60 * 1000; // 14 dias em ms
@@ -88,14 +90,6 @@ public class RabbitTopologyConfig {
                 .with(properties.getRoutingKeys().getDeleted());
     }
 
-    // RETRY
-    @Bean
-    public Binding bindRetry() {
-        return BindingBuilder.bind(retryQueue())
-                .to(productDlx())
-                .with(properties.getRoutingKeys().getRetry5s());
-    }
-
     // DLQ
     @Bean
     public Binding bindDead() {
@@ -103,4 +97,57 @@ public class RabbitTopologyConfig {
                 .to(productDlx())
                 .with(properties.getRoutingKeys().getDead());
     }
+
+    // ============================================================
+    // RETRY COM BACKOFF EM FAIXAS
+    // ============================================================
+    // Uma fila por faixa (1s, 5s, 30s, 5m...), escolhida pelo header x-retry-tier no exchange
+    // de headers. As filas não têm x-dead-letter-routing-key: ao expirar, a mensagem volta ao
+    // exchange principal com a routing key com que foi publicada — a original do evento.
+    @Bean
+    public Declarables retryTopology() {
+        RabbitMQProperties.RetryConfig retry = properties.getRetry();
+        List<Declarable> declarables = new ArrayList<>();
+
+        // o RabbitMQ só expira mensagens na cabeça da fila: uma expiração por mensagem menor que a
+        // das que estão na frente não adianta nada. O jitter vem de várias filas por faixa, cada uma
+        // com seu TTL; quem publica sorteia a fila.
+        for (long tierMs : retry.getBackoffMs()) {
+            for (int slot = 0; slot < retry.slots(); slot++) {
+                Queue queue = QueueBuilder.durable(retry.queueName(tierMs, slot))
+                        .withArgument("x-message-ttl", retry.slotDelay(tierMs, slot))
+                        .withArgument("x-dead-letter-exchange", properties.getExchanges().getMain())
+                        .build();
+                declarables.add(queue);
+                declarables.add(BindingBuilder.bind(queue)
+                        .to(productRetryExchange())
+                        .where(RETRY_TIER_HEADER)
+                        .matches(RabbitMQProperties.RetryConfig.slotName(tierMs, slot)));
+            }
+        }
+        return new Declarables(declarables);
+    }
+
+    // ============================================================
+    // PARTIÇÕES (hash do id calculado no microsA)
+    // ============================================================
+    // Uma fila por partição com single active consumer: várias instâncias do microsB podem
+    // assinar todas as filas, mas só uma consome cada partição por vez (ordem por produto).
+    @Bean
+    @ConditionalOnProperty(prefix = "app.rabbitmq.partitions", name = "enabled", havingValue = "true")
+    public Declarables partitionTopology() {
+        RabbitMQProperties.Partitions partitions = properties.getPartitions();
+        List<Declarable> declarables = new ArrayList<>();
+
+        for (int i = 0; i < partitions.getCount(); i++) {
+            Queue queue = QueueBuilder.durable(partitions.queueName(i))
+                    .singleActiveConsumer()
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(productExchange())
+                    .with(partitions.bindingPattern(i)));
+        }
+        return new Declarables(declarables);
+    }
 }
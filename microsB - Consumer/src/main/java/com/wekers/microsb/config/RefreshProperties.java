@@ -0,0 +1,19 @@
+package com.wekers.microsb.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.elasticsearch.refresh")
+public class RefreshProperties {
+    private String header = "x-refresh";           // valor por mensagem: false | wait_for | true
+    private String defaultPolicy = "false";        // false => visível no próximo refresh_interval do índice
+    private Map<String, String> byType = new HashMap<>(); // created / updated / deleted -> política
+}
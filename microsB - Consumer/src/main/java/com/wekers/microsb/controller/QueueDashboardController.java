@@ -60,6 +60,9 @@ public class QueueDashboardController {
     @GetMapping(value = "/api/messages/{kind}", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
     public ResponseEntity<QueueMessagesResponse> getQueueMessages(@PathVariable String kind) {
+        if ("retry".equals(kind)) {
+            return noCache(new QueueMessagesResponse(retryQueueNames(), peekRetry()));
+        }
         String queue = resolveQueue(kind);
         List<String> raw = queueService.peek(queue, 10);
         List<String> cleaned = raw.stream().map(this::normalizeJsonOrKeep).toList();
@@ -79,7 +82,7 @@ public class QueueDashboardController {
                 queueService.peek(c.getCreated(), 10).stream().map(this::normalizeJsonOrKeep).toList(),
                 queueService.peek(c.getUpdated(), 10).stream().map(this::normalizeJsonOrKeep).toList(),
                 queueService.peek(c.getDeleted(), 10).stream().map(this::normalizeJsonOrKeep).toList(),
-                queueService.peek(c.getRetry5s(), 10).stream().map(this::normalizeJsonOrKeep).toList(),
+                peekRetry(),
                 queueService.peek(c.getDead(), 10).stream().map(this::normalizeJsonOrKeep).toList(),
                 countCreated(), countUpdated(), countDeleted(),
                 countRetry(), countDead()
@@ -135,7 +138,6 @@ public class QueueDashboardController {
             case "created" -> q.getCreated();
             case "updated" -> q.getUpdated();
             case "deleted" -> q.getDeleted();
-            case "retry"   -> q.getRetry5s();
             case "dead"    -> q.getDead();
             default -> throw new IllegalArgumentException("Unknown queue: " + kind);
         };
@@ -146,16 +148,31 @@ public class QueueDashboardController {
         m.addAttribute("createdQueue", q.getCreated());
         m.addAttribute("updatedQueue", q.getUpdated());
         m.addAttribute("deletedQueue", q.getDeleted());
-        m.addAttribute("retryQueue", q.getRetry5s());
+        m.addAttribute("retryQueue", retryQueueNames());
         m.addAttribute("deadQueue", q.getDead());
     }
 
     private long countCreated() { return queueService.getMessageCount(properties.getQueues().getCreated()); }
     private long countUpdated() { return queueService.getMessageCount(properties.getQueues().getUpdated()); }
     private long countDeleted() { return queueService.getMessageCount(properties.getQueues().getDeleted()); }
-    private long countRetry()   { return queueService.getMessageCount(properties.getQueues().getRetry5s()); }
+    private long countRetry()   {
+        return properties.getRetry().queueNames().stream().mapToLong(queueService::getMessageCount).sum();
+    }
     private long countDead()    { return queueService.getMessageCount(properties.getQueues().getDead()); }
 
+    // faixas de backoff (1s, 5s, 30s, 5m...) aparecem como uma única "fila" de retry
+    private List<String> peekRetry() {
+        return properties.getRetry().queueNames().stream()
+                .flatMap(queue -> queueService.peek(queue, 10).stream())
+                .limit(10)
+                .map(this::normalizeJsonOrKeep)
+                .toList();
+    }
+
+    private String retryQueueNames() {
+        return String.join(", ", properties.getRetry().queueNames());
+    }
+
     private String normalizeJsonOrKeep(String raw) {
         if (raw == null) return "";
         String s = raw.trim()
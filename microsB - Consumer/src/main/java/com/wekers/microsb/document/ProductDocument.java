@@ -6,11 +6,16 @@ import org.springframework.data.elasticsearch.annotations.*;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Document(indexName = "products_write")
 @Setting(settingPath = "/elasticsearch/product-settings.json")
 public class ProductDocument {
 
+    // códigos hexadecimais de 6 caracteres no final do nome (compilado uma vez)
+    private static final Pattern HEX_SUFFIX = Pattern.compile("[a-f0-9]{6}$");
+
     // ========================================================================
     // CORE FIELDS
     // ========================================================================
@@ -42,7 +47,7 @@ public class ProductDocument {
     private String correctedQuery;
 
     // ========================================================================
-    // UNIQUE KEY (NAME + DESCRIPTION NORMALIZED)
+    // UNIQUE KEY: content hash (128 bits) calculado no microsA; legado: name::description
     // ========================================================================
     @Field(type = FieldType.Keyword, normalizer = "lowercase_normalizer")
     private String uniqueKey;
@@ -56,6 +61,10 @@ public class ProductDocument {
     @Field(type = FieldType.Date, format = DateFormat.date_time)
     private Instant priceChangedAt;
 
+    // versão do produto no Postgres (guarda dos updates parciais, que não aceitam version_type=external)
+    @Field(type = FieldType.Long)
+    private Long version;
+
     // ========================================================================
     // CONSTRUCTORS
     // ========================================================================
@@ -73,13 +82,38 @@ public class ProductDocument {
         this.priceChangedAt = Instant.now();
     }
 
+    // ========================================================================
+    // DOCUMENTO PARA INDEXAÇÃO (normalização única)
+    // ========================================================================
+    /**
+     * Monta o documento a partir dos campos de um evento calculando cada campo derivado uma vez
+     * (os setters recalculam chave, limpeza do nome e datas a cada chamada). Com content hash
+     * a chave legada name::description nem é montada.
+     */
+    public static ProductDocument forIndexing(String id, String name, BigDecimal price, String description,
+                                              UUID contentHash, Long version) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        ProductDocument doc = new ProductDocument();
+        doc.id = id;
+        doc.name = name;
+        doc.price = price;
+        doc.description = description;
+        doc.nameSpell = name;
+        doc.nameSpellClean = cleanNameForSpellCheck(name);
+        doc.uniqueKey = contentHash != null ? contentHash.toString() : buildUniqueKey(name, description);
+        doc.updatedAt = now;
+        doc.priceChangedAt = now;
+        doc.version = version;
+        return doc;
+    }
+
     // ========================================================================
     // NAME CLEANER FOR SPELL CHECK
     // ========================================================================
-    private String cleanNameForSpellCheck(String name) {
+    public static String cleanNameForSpellCheck(String name) {
         if (name == null) return null;
         // Remove códigos hexadecimais de 6 caracteres no final
-        return name.replaceAll("[a-f0-9]{6}$", "").trim();
+        return HEX_SUFFIX.matcher(name).replaceFirst("").trim();
     }
 
     // ========================================================================
@@ -189,4 +223,12 @@ public class ProductDocument {
     public Instant getPriceChangedAt() {
         return priceChangedAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -7,5 +7,7 @@ public record ProductCreatedEvent(
         UUID id,
         String name,
         String description,
-        BigDecimal price
+        BigDecimal price,
+        UUID contentHash,   // hash de name+description normalizados (null em eventos antigos)
+        Long version
 ) {}
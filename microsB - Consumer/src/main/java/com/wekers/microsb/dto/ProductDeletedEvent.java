@@ -5,5 +5,6 @@ import java.util.UUID;
 public record ProductDeletedEvent(
         UUID id,
         String name,
-        String description
+        String description,
+        Long version
 ) {}
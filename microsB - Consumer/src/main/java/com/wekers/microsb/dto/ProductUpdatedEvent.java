@@ -0,0 +1,21 @@
+package com.wekers.microsb.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// Delta: só os campos alterados vêm preenchidos (null = inalterado)
+public record ProductUpdatedEvent(
+        UUID id,
+        String name,
+        String description,
+        BigDecimal price,
+        UUID contentHash,   // hash de name+description normalizados (null em eventos antigos)
+        Long version,
+        Long baseVersion    // delta: só se aplica sobre o documento nessa versão (null em eventos antigos)
+) {
+
+    // evento completo (reconciliação, producers antigos): pode virar index em vez de _update
+    public boolean isFull() {
+        return name != null && description != null && price != null;
+    }
+}
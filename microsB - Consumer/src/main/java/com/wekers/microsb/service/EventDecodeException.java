@@ -0,0 +1,18 @@
+package com.wekers.microsb.service;
+
+/**
+ * Corpo que não decodifica (JSON/Smile inválido, gzip corrompido, tipo desconhecido).
+ * Terminal: vai direto para a DLQ e nunca conta como indisponibilidade do Elasticsearch.
+ */
+public class EventDecodeException extends RuntimeException {
+
+    public EventDecodeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public static EventDecodeException wrap(Throwable error) {
+        return error instanceof EventDecodeException e
+                ? e
+                : new EventDecodeException("Falha ao decodificar o evento: " + error.getMessage(), error);
+    }
+}
@@ -0,0 +1,117 @@
+package com.wekers.microsb.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decodifica os eventos de produto conforme o content_type / content_encoding da mensagem.
+ *
+ * Aceita JSON (inclusive text/plain, usado pelo reprocessamento do dashboard)
+ * e Smile ({@code application/x-jackson-smile}), com ou sem gzip.
+ * Os ObjectReaders de cada evento são montados uma vez por formato; sem gzip o corpo é lido
+ * direto do byte[], sem stream intermediário.
+ */
+@Component
+public class EventDecoder {
+
+    public static final String CONTENT_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+    public static final String EVENT_TYPE_HEADER = "x-event-type";
+
+    private static final List<Class<?>> EVENT_TYPES =
+            List.of(ProductCreatedEvent.class, ProductUpdatedEvent.class, ProductDeletedEvent.class);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final Map<Class<?>, ObjectReader> jsonReaders = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectReader> smileReaders = new ConcurrentHashMap<>();
+
+    public EventDecoder(ObjectMapper objectMapper) {
+        // campos novos do producer não devem quebrar o consumer durante um deploy
+        this.jsonMapper = objectMapper.copy()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.smileMapper = SmileMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        for (Class<?> type : EVENT_TYPES) {
+            jsonReaders.put(type, jsonMapper.readerFor(type));
+            smileReaders.put(type, smileMapper.readerFor(type));
+        }
+    }
+
+    // IOException aqui é do corpo (ZipException, EOFException, JSON inválido), não de rede
+    public <T> T decode(Message msg, Class<T> type) {
+        MessageProperties props = msg.getMessageProperties();
+        ObjectReader reader = readerFor(props.getContentType(), type);
+        try {
+            if (!CONTENT_ENCODING_GZIP.equals(props.getContentEncoding())) {
+                return reader.readValue(msg.getBody());
+            }
+            try (InputStream in = open(msg.getBody(), props.getContentEncoding())) {
+                return reader.readValue(in);
+            }
+        } catch (IOException e) {
+            throw EventDecodeException.wrap(e);
+        }
+    }
+
+    /**
+     * Converte o corpo (qualquer formato suportado) em JSON legível; usado pelo dashboard de filas.
+     */
+    public String toJson(byte[] body, String contentType, String contentEncoding) throws IOException {
+        try (InputStream in = open(body, contentEncoding)) {
+            return jsonMapper.writeValueAsString(mapperFor(contentType).readTree(in));
+        }
+    }
+
+    /**
+     * CREATED / UPDATED / DELETED: header x-event-type do producer ou, na falta dele, o sufixo
+     * da routing key (products.created, products.partition.3.created...).
+     */
+    public static String eventType(MessageProperties props) {
+        Object header = props.getHeaders().get(EVENT_TYPE_HEADER);
+        if (header != null) {
+            return header.toString();
+        }
+        String routingKey = props.getReceivedRoutingKey();
+        String suffix = routingKey == null ? "" : routingKey.substring(routingKey.lastIndexOf('.') + 1);
+        return suffix.toUpperCase(Locale.ROOT);
+    }
+
+    public static boolean isBinary(String contentType, String contentEncoding) {
+        return CONTENT_TYPE_SMILE.equals(contentType) || CONTENT_ENCODING_GZIP.equals(contentEncoding);
+    }
+
+    private ObjectReader readerFor(String contentType, Class<?> type) {
+        return CONTENT_TYPE_SMILE.equals(contentType)
+                ? smileReaders.computeIfAbsent(type, smileMapper::readerFor)
+                : jsonReaders.computeIfAbsent(type, jsonMapper::readerFor);
+    }
+
+    private ObjectMapper mapperFor(String contentType) {
+        return CONTENT_TYPE_SMILE.equals(contentType) ? smileMapper : jsonMapper;
+    }
+
+    private static InputStream open(byte[] body, String contentEncoding) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        return CONTENT_ENCODING_GZIP.equals(contentEncoding) ? new GZIPInputStream(in) : in;
+    }
+}
@@ -0,0 +1,119 @@
+package com.wekers.microsb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas do pipeline de ingestão (expostas em /actuator/prometheus).
+ *
+ * Timers com histograma por tipo de evento e fase (decode / es / ack), contadores de resultado
+ * (conflito de versão, não encontrado, delta fora de ordem), retries por faixa e envios à DLQ, e o lag
+ * ponta a ponta a partir do header x-published-at gravado pelo producer. Escritas no ES também
+ * são medidas por política de refresh ({@code ingest.es.write}).
+ * Os meters ficam em cache por tag: nada de lookup no registry por mensagem.
+ */
+@Component
+public class IngestMetrics {
+
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+
+    public enum Phase { DECODE, ES, ACK, BULK }
+
+    public enum Outcome { CONFLICT, NOT_FOUND, GAP }
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> lastLag = new ConcurrentHashMap<>();
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordPhase(String type, Phase phase, long elapsedNanos) {
+        String tag = tag(type);
+        String phaseTag = tag(phase.name());
+        timers.computeIfAbsent("phase:" + tag + ":" + phaseTag, k -> Timer.builder("ingest.phase")
+                        .description("Tempo de cada fase do processamento de um evento")
+                        .tag("type", tag)
+                        .tag("phase", phaseTag)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // custo da escrita no ES por política de refresh (wait_for espera o próximo refresh do shard)
+    public void recordWrite(String type, String refresh, long elapsedNanos) {
+        String tag = tag(type);
+        timers.computeIfAbsent("write:" + tag + ":" + refresh, k -> Timer.builder("ingest.es.write")
+                        .description("Requisição de escrita no Elasticsearch, por política de refresh")
+                        .tag("type", tag)
+                        .tag("refresh", refresh)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void outcome(String type, Outcome outcome) {
+        String tag = tag(type);
+        String outcomeTag = tag(outcome.name());
+        counter("outcome:" + tag + ":" + outcomeTag, "ingest.outcome", "type", tag, "outcome", outcomeTag).increment();
+    }
+
+    public void retry(String type, String tier) {
+        String tag = tag(type);
+        counter("retry:" + tag + ":" + tier, "ingest.retries", "type", tag, "tier", tier).increment();
+    }
+
+    public void deadLetter(String type, String reason) {
+        String tag = tag(type);
+        counter("dlq:" + tag + ":" + reason, "ingest.dead_letters", "type", tag, "reason", reason).increment();
+    }
+
+    /**
+     * Lag publicação -> indexado. Mensagens sem o header (producer antigo) não entram.
+     */
+    public void recordLag(MessageProperties props) {
+        Object header = props.getHeaders().get(PUBLISHED_AT_HEADER);
+        if (!(header instanceof Number publishedAt)) {
+            return;
+        }
+        long lagMs = Math.max(0, System.currentTimeMillis() - publishedAt.longValue());
+        String tag = tag(EventDecoder.eventType(props));
+
+        timers.computeIfAbsent("lag:" + tag, k -> Timer.builder("ingest.end_to_end")
+                        .description("Da publicação no producer até o evento aplicado no Elasticsearch")
+                        .tag("type", tag)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(lagMs, TimeUnit.MILLISECONDS);
+
+        lastLag.computeIfAbsent(tag, k -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("ingest.lag", value, AtomicLong::get)
+                    .description("Lag do último evento aplicado")
+                    .tag("type", tag)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            return value;
+        }).set(lagMs);
+    }
+
+    private Counter counter(String key, String name, String... tags) {
+        return counters.computeIfAbsent(key, k -> Counter.builder(name).tags(tags).register(registry));
+    }
+
+    private static String tag(String value) {
+        return value == null || value.isEmpty() ? "unknown" : value.toLowerCase(Locale.ROOT);
+    }
+}
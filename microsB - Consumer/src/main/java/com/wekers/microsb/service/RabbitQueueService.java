@@ -1,5 +1,6 @@
 package com.wekers.microsb.service;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.GetResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +19,7 @@ public class RabbitQueueService {
 
     private final ConnectionFactory connectionFactory;
     private final RabbitTemplate rabbitTemplate;
+    private final EventDecoder decoder;
 
     /**
      * Lê mensagens SEM remover da fila.
@@ -36,7 +38,7 @@ public class RabbitQueueService {
                 if (response == null) break;
 
                 byte[] body = response.getBody();
-                String formatted = MessageUtils.formatMessageBody(body);
+                String formatted = format(body, response.getProps());
 
                 messages.add(formatted);
                 deliveryTags.add(response.getEnvelope().getDeliveryTag());
@@ -57,6 +59,21 @@ public class RabbitQueueService {
 
 
 
+    /**
+     * Mensagens binárias (Smile / gzip) são convertidas para JSON antes de formatar.
+     */
+    private String format(byte[] body, AMQP.BasicProperties props) {
+        if (body != null && EventDecoder.isBinary(props.getContentType(), props.getContentEncoding())) {
+            try {
+                body = decoder.toJson(body, props.getContentType(), props.getContentEncoding())
+                        .getBytes(StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                log.warn("⚠ Could not decode {} message for display", props.getContentType(), e);
+            }
+        }
+        return MessageUtils.formatMessageBody(body);
+    }
+
     /**
      * Converte bytes → JSON pretty ou texto simples.
      */
@@ -0,0 +1,123 @@
+package com.wekers.microsb.service.consumers;
+
+import com.wekers.microsb.config.RabbitMQProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Controle AIMD da concorrência de ingestão a partir do que o ES aguenta.
+ *
+ * A cada ciclo: 429 / es_rejected_execution ou latência média acima do alvo => a janela é
+ * multiplicada por decreaseFactor; fila acumulada, latência boa e janela de fato saturada no
+ * ciclo => cresce increaseStep. Sem nada disso o limite fica como está.
+ *
+ * O ajuste é no total em processamento nas lanes ({@link ConcurrencyWindow}), não no número de
+ * consumers nem no prefetch: mais consumers na mesma fila quebrariam a ordem por produto, e o
+ * prefetch de um canal aberto não muda sem reiniciar o consumer. A janela cheia segura o
+ * listener, então o broker deixa de entregar além do prefetch.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${app.rabbitmq.adaptive.enabled:false} and ${app.rabbitmq.lanes.enabled:false}"
+        + " and !${app.rabbitmq.batch.enabled:false}")
+public class AdaptiveIngestController {
+
+    private final RabbitMQProperties.Adaptive settings;
+    private final String[] queues;
+    private final ConcurrencyWindow window;
+    private final IngestStats stats;
+    private final AmqpAdmin amqpAdmin;
+
+    private final Counter rejections;
+    private final Counter increases;
+    private final Counter decreases;
+
+    private volatile long lastLatencyMs;
+    private volatile long lastBacklog;
+
+    public AdaptiveIngestController(RabbitMQProperties properties,
+                                    ConcurrencyWindow window,
+                                    IngestStats stats,
+                                    AmqpAdmin amqpAdmin,
+                                    MeterRegistry registry) {
+        this.settings = properties.getAdaptive();
+        this.queues = properties.ingestQueueNames();
+        this.window = window;
+        this.stats = stats;
+        this.amqpAdmin = amqpAdmin;
+
+        Gauge.builder("ingest.concurrency.limit", window, ConcurrencyWindow::getLimit)
+                .description("Mensagens em processamento permitidas nas lanes")
+                .register(registry);
+        Gauge.builder("ingest.concurrency.in_flight", window, ConcurrencyWindow::getInFlight)
+                .register(registry);
+        Gauge.builder("ingest.latency.avg", this, c -> c.lastLatencyMs)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("ingest.backlog", this, c -> c.lastBacklog)
+                .baseUnit("messages")
+                .register(registry);
+        this.rejections = Counter.builder("ingest.es.rejections").register(registry);
+        this.increases = Counter.builder("ingest.concurrency.adjustments").tag("action", "increase").register(registry);
+        this.decreases = Counter.builder("ingest.concurrency.adjustments").tag("action", "decrease").register(registry);
+
+        log.info("🎛️ Adaptive ingest enabled: limit={} (min={}, max={}), target latency {} ms",
+                window.getLimit(), settings.getMin(), settings.getMax(), settings.getTargetLatencyMs());
+    }
+
+    @Scheduled(fixedDelayString = "${app.rabbitmq.adaptive.interval-ms:5000}")
+    public void tick() {
+        IngestStats.Snapshot sample = stats.drain();
+        int peak = window.drainPeak();
+        long backlog = backlog();
+        int limit = window.getLimit();
+
+        lastLatencyMs = sample.avgLatencyMs();
+        lastBacklog = backlog;
+        rejections.increment(sample.rejections());
+
+        boolean overloaded = sample.rejections() > 0
+                || (sample.processed() > 0 && sample.avgLatencyMs() > settings.getTargetLatencyMs());
+
+        if (overloaded && limit > settings.getMin()) {
+            int next = Math.max(settings.getMin(), (int) (limit * settings.getDecreaseFactor()));
+            window.setLimit(next);
+            decreases.increment();
+            log.info("🔻 Ingest concurrency {} -> {} (latency={} ms, rejections={}, backlog={})",
+                    limit, next, sample.avgLatencyMs(), sample.rejections(), backlog);
+        } else if (!overloaded && backlog > settings.getBacklogThreshold()
+                && peak >= limit && limit < settings.getMax()) {
+            int next = Math.min(settings.getMax(), limit + settings.getIncreaseStep());
+            window.setLimit(next);
+            increases.increment();
+            log.info("🔺 Ingest concurrency {} -> {} (latency={} ms, backlog={})",
+                    limit, next, sample.avgLatencyMs(), backlog);
+        } else {
+            log.debug("🎛️ Ingest concurrency held at {} (latency={} ms, rejections={}, backlog={}, peak={})",
+                    limit, sample.avgLatencyMs(), sample.rejections(), backlog, peak);
+        }
+    }
+
+    // fila que não existe (ou broker fora) não conta: sem backlog conhecido não há aumento
+    private long backlog() {
+        long total = 0;
+        for (String queue : queues) {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(queue);
+                if (info != null) {
+                    total += info.getMessageCount();
+                }
+            } catch (Exception e) {
+                log.debug("⚠ Could not read depth of {}: {}", queue, e.getMessage());
+            }
+        }
+        return total;
+    }
+}
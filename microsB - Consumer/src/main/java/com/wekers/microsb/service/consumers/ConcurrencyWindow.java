@@ -0,0 +1,66 @@
+package com.wekers.microsb.service.consumers;
+
+import com.wekers.microsb.config.RabbitMQProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limite ajustável de mensagens em processamento nas lanes (somando todas).
+ *
+ * O listener reserva uma vaga antes de entregar a mensagem à lane e a lane libera ao terminar;
+ * com a janela cheia o listener bloqueia e o broker para de entregar além do prefetch.
+ * O limite é alterado em tempo real pelo {@link AdaptiveIngestController}.
+ * Com app.rabbitmq.adaptive.enabled=false a janela não limita nada.
+ */
+@Component
+public class ConcurrencyWindow {
+
+    private final boolean enabled;
+    private int limit;
+    private int inFlight;
+    private int peak; // maior inFlight desde o último drainPeak()
+
+    public ConcurrencyWindow(RabbitMQProperties properties) {
+        RabbitMQProperties.Adaptive settings = properties.getAdaptive();
+        this.enabled = settings.isEnabled();
+        this.limit = Math.clamp(settings.getInitial(), settings.getMin(), settings.getMax());
+    }
+
+    public synchronized void acquire() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+        peak = Math.max(peak, inFlight);
+    }
+
+    public synchronized void release() {
+        if (!enabled) {
+            return;
+        }
+        inFlight--;
+        notifyAll();
+    }
+
+    // reduzir não interrompe nada: o excesso só termina e não é reposto
+    public synchronized void setLimit(int limit) {
+        this.limit = limit;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int drainPeak() {
+        int value = peak;
+        peak = inFlight;
+        return value;
+    }
+}
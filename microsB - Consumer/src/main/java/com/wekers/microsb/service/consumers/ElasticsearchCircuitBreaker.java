@@ -0,0 +1,136 @@
+package com.wekers.microsb.service.consumers;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.elasticsearch.cluster.HealthResponse;
+import com.wekers.microsb.config.CircuitBreakerProperties;
+import com.wekers.microsb.service.handlers.FailureClassifier;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker do Elasticsearch em tempo de execução.
+ *
+ * CLOSED: falhas de disponibilidade (conexão, timeout, 502/503/504) devolvem a mensagem à fila
+ * em vez de gastar retry; failureThreshold falhas seguidas abrem o circuito.
+ * OPEN: todos os listener containers param (as mensagens ficam nas filas) e a saúde do índice
+ * é verificada com backoff exponencial.
+ * HALF_OPEN: com o índice saudável os containers voltam; o primeiro sucesso fecha o circuito,
+ * a primeira falha de disponibilidade abre de novo.
+ */
+@Slf4j
+@Component
+public class ElasticsearchCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final CircuitBreakerProperties properties;
+    private final ElasticsearchClient client;
+    private final RabbitListenerEndpointRegistry registry;
+    // parar containers não pode rodar na thread de um listener (stop espera os consumers)
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("es-breaker").daemon().factory());
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long nextProbeMs;
+
+    public ElasticsearchCircuitBreaker(CircuitBreakerProperties properties,
+                                       ElasticsearchClient client,
+                                       RabbitListenerEndpointRegistry registry,
+                                       MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.client = client;
+        this.registry = registry;
+        this.nextProbeMs = properties.getProbeInitialMs();
+
+        Gauge.builder("ingest.breaker.open", this, b -> b.state == State.CLOSED ? 0 : 1)
+                .description("1 enquanto o consumo está suspenso por indisponibilidade do Elasticsearch")
+                .register(meterRegistry);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true se a falha é de disponibilidade do ES: quem chamou devolve a mensagem à fila
+     *         (nack com requeue) em vez de mandar para retry/DLQ
+     */
+    public boolean onFailure(Throwable error) {
+        if (!properties.isEnabled() || !FailureClassifier.isUnavailable(error)) {
+            return false;
+        }
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN
+                    || (state == State.CLOSED && consecutiveFailures >= properties.getFailureThreshold())) {
+                open(error);
+            }
+        }
+        return true;
+    }
+
+    public void onSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return; // caminho comum sem lock
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                nextProbeMs = properties.getProbeInitialMs();
+                log.info("✅ Elasticsearch circuit closed — consumption back to normal");
+            }
+        }
+    }
+
+    // ======================================================
+    // TRANSIÇÕES
+    // ======================================================
+    private void open(Throwable cause) {
+        if (state == State.HALF_OPEN) {
+            nextProbeMs = Math.min(nextProbeMs * 2, properties.getProbeMaxMs());
+        }
+        state = State.OPEN;
+        log.error("⛔ Elasticsearch circuit opened after {} failures ({}) — stopping listeners, next probe in {} ms",
+                consecutiveFailures, cause.toString(), nextProbeMs);
+        scheduler.execute(() -> registry.getListenerContainers().forEach(container -> container.stop()));
+        scheduler.schedule(this::probe, nextProbeMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        try {
+            HealthResponse health = client.cluster().health(h -> h.index(properties.getProbeIndex()));
+            if (health.status() != HealthStatus.Red) {
+                synchronized (this) {
+                    state = State.HALF_OPEN;
+                    consecutiveFailures = 0;
+                }
+                log.info("🩺 Elasticsearch healthy again ({}) — resuming listeners", health.status());
+                registry.getListenerContainers().forEach(container -> container.start());
+                return;
+            }
+            log.warn("🩺 Elasticsearch probe: index {} is RED", properties.getProbeIndex());
+        } catch (Exception e) {
+            log.warn("🩺 Elasticsearch probe failed: {}", e.getMessage());
+        }
+        synchronized (this) {
+            nextProbeMs = Math.min(nextProbeMs * 2, properties.getProbeMaxMs());
+        }
+        scheduler.schedule(this::probe, nextProbeMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,38 @@
+package com.wekers.microsb.service.consumers;
+
+import com.wekers.microsb.service.handlers.FailureClassifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Amostras de um ciclo do {@link AdaptiveIngestController}: tempo de processamento por mensagem
+ * nas lanes e quantas foram recusadas pelo ES por sobrecarga. Zeradas a cada leitura.
+ */
+@Component
+public class IngestStats {
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    void record(long elapsedNanos) {
+        processed.increment();
+        latencyNanos.add(elapsedNanos);
+    }
+
+    void recordFailure(long elapsedNanos, Throwable error) {
+        record(elapsedNanos);
+        if (FailureClassifier.isOverload(error)) {
+            rejections.increment();
+        }
+    }
+
+    Snapshot drain() {
+        long count = processed.sumThenReset();
+        long nanos = latencyNanos.sumThenReset();
+        return new Snapshot(count, count == 0 ? 0 : nanos / count / 1_000_000, rejections.sumThenReset());
+    }
+
+    record Snapshot(long processed, long avgLatencyMs, long rejections) {}
+}
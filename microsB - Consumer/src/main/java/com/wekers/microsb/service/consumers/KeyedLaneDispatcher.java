@@ -0,0 +1,334 @@
+package com.wekers.microsb.service.consumers;
+
+import com.rabbitmq.client.Channel;
+import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.service.EventDecodeException;
+import com.wekers.microsb.service.EventDecoder;
+import com.wekers.microsb.service.IngestMetrics;
+import com.wekers.microsb.service.handlers.ProductBaseHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Processamento concorrente com ordem por produto.
+ *
+ * O listener só decodifica; o processamento vai para uma lane escolhida pelo hash do id
+ * (mesmo produto => mesma lane => em ordem). Cada lane é uma virtual thread com fila limitada:
+ * lane cheia bloqueia o listener (backpressure até o prefetch do broker).
+ * Os acks saem em ordem de entrega por canal: um basicAck(multiple=true) cobre o maior prefixo
+ * de mensagens já concluídas, então uma mensagem lenta nunca é confirmada antes da hora.
+ *
+ * O total em processamento nas lanes é limitado pela {@link ConcurrencyWindow}, ajustada
+ * pelo {@link AdaptiveIngestController} quando app.rabbitmq.adaptive.enabled=true.
+ *
+ * Com app.rabbitmq.lanes.enabled=false tudo roda na thread do listener, como antes.
+ */
+@Slf4j
+@Component
+public class KeyedLaneDispatcher {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final boolean enabled;
+    private final Lane[] lanes;
+    private final Map<Channel, OrderedAcker> ackers = new ConcurrentHashMap<>();
+    private final ConcurrencyWindow window;
+    private final IngestStats stats;
+    private final ElasticsearchCircuitBreaker breaker;
+    private final IngestMetrics metrics;
+
+    public KeyedLaneDispatcher(RabbitMQProperties properties, ConcurrencyWindow window, IngestStats stats,
+                               ElasticsearchCircuitBreaker breaker, IngestMetrics metrics) {
+        this.window = window;
+        this.stats = stats;
+        this.breaker = breaker;
+        this.metrics = metrics;
+        RabbitMQProperties.Lanes settings = properties.getLanes();
+        this.enabled = settings.isEnabled();
+        this.lanes = new Lane[enabled ? settings.getCount() : 0];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane("product-lane-" + i, settings.getQueueCapacity());
+        }
+        if (enabled) {
+            log.info("🛣️ Keyed lanes enabled: {} lanes, capacity {}", lanes.length, settings.getQueueCapacity());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Processor<T> {
+        void process(T event) throws Exception;
+    }
+
+    /**
+     * Decodifica na thread do listener e processa na lane do id. Falhas (decodificação ou
+     * processamento) vão para retry/DLQ pelo handler; a mensagem é confirmada em ordem depois.
+     * ES indisponível não consome retry: a mensagem volta à fila e o {@link ElasticsearchCircuitBreaker}
+     * decide se o consumo para. Com o circuito aberto, o que ainda estava nas lanes volta à fila
+     * sem chamar o ES. Corpo que não decodifica vai direto para a DLQ, sem passar pelo breaker.
+     */
+    public <T> void dispatch(Message msg, Channel channel, ProductBaseHandler handler,
+                             Decoder<T> decoder, Function<T, UUID> key, Processor<T> processor) throws IOException {
+        long tag = msg.getMessageProperties().getDeliveryTag();
+        String type = EventDecoder.eventType(msg.getMessageProperties());
+
+        if (!enabled) {
+            long start = System.nanoTime();
+            T event;
+            try {
+                event = decoder.decode();
+            } catch (Exception e) {
+                handler.retryOrDlq(msg, channel, tag, EventDecodeException.wrap(e));
+                return;
+            }
+            long decoded = System.nanoTime();
+            metrics.recordPhase(type, IngestMetrics.Phase.DECODE, decoded - start);
+            long processed;
+            try {
+                processor.process(event);
+                processed = System.nanoTime();
+                metrics.recordPhase(type, IngestMetrics.Phase.ES, processed - decoded);
+                breaker.onSuccess();
+            } catch (Exception e) {
+                if (breaker.onFailure(e)) {
+                    log.warn("⏸ Elasticsearch unavailable — requeueing (tag={}): {}", tag, e.toString());
+                    channel.basicNack(tag, false, true);
+                } else {
+                    handler.retryOrDlq(msg, channel, tag, e);
+                }
+                return;
+            }
+            // fora do try: a mensagem já foi aplicada, ack que falha (canal fechado) não vira retry
+            channel.basicAck(tag, false);
+            metrics.recordPhase(type, IngestMetrics.Phase.ACK, System.nanoTime() - processed);
+            metrics.recordLag(msg.getMessageProperties());
+            return;
+        }
+
+        OrderedAcker acker = ackerFor(channel);
+        acker.register(tag);
+
+        T event;
+        UUID id;
+        long decodeStart = System.nanoTime();
+        try {
+            event = decoder.decode();
+            id = key.apply(event);
+        } catch (Exception e) {
+            route(msg, handler, acker, tag, EventDecodeException.wrap(e));
+            return;
+        }
+        metrics.recordPhase(type, IngestMetrics.Phase.DECODE, System.nanoTime() - decodeStart);
+
+        Lane lane = lanes[Math.floorMod(id.hashCode(), lanes.length)];
+        try {
+            acquireWindow();
+        } catch (RuntimeException e) {
+            // listener interrompido (ex.: breaker parando os containers): a tag não pode ficar
+            // em pending, senão segura o ack de todas as seguintes do canal
+            acker.requeue(tag);
+            throw e;
+        }
+        Runnable task = () -> {
+            try {
+                if (breaker.getState() == ElasticsearchCircuitBreaker.State.OPEN) {
+                    // o que já estava na lane quando o circuito abriu volta à fila sem tocar no ES
+                    acker.requeue(tag);
+                    return;
+                }
+                long start = System.nanoTime();
+                long processed;
+                try {
+                    processor.process(event);
+                    processed = System.nanoTime();
+                    stats.record(processed - start);
+                    metrics.recordPhase(type, IngestMetrics.Phase.ES, processed - start);
+                    breaker.onSuccess();
+                } catch (Exception e) {
+                    stats.recordFailure(System.nanoTime() - start, e);
+                    fail(msg, handler, acker, tag, e);
+                    return;
+                }
+                // fora do try: a mensagem já foi aplicada e não pode voltar para retry/DLQ
+                acker.complete(tag);
+                metrics.recordPhase(type, IngestMetrics.Phase.ACK, System.nanoTime() - processed);
+                metrics.recordLag(msg.getMessageProperties());
+            } finally {
+                window.release(); // qualquer saída devolve a vaga, senão a janela encolhe para sempre
+            }
+        };
+        try {
+            lane.submit(task);
+        } catch (RuntimeException e) {
+            window.release();
+            acker.requeue(tag);
+            throw e;
+        }
+    }
+
+    private void fail(Message msg, ProductBaseHandler handler, OrderedAcker acker, long tag, Exception e) {
+        if (breaker.onFailure(e)) {
+            log.warn("⏸ Elasticsearch unavailable — requeueing (tag={}): {}", tag, e.toString());
+            acker.requeue(tag);
+            return;
+        }
+        route(msg, handler, acker, tag, e);
+    }
+
+    // retry/DLQ pelo handler; o ack sai em ordem depois
+    private void route(Message msg, ProductBaseHandler handler, OrderedAcker acker, long tag, Exception e) {
+        log.error("❌ Error processing message from {} (tag={})", msg.getMessageProperties().getConsumerQueue(), tag, e);
+        try {
+            handler.routeFailure(msg, e);
+            acker.complete(tag);
+        } catch (Exception routeError) {
+            // sem retry/DLQ disponível: devolve à fila em vez de perder a mensagem
+            log.error("❌ Could not route failed message — requeueing (tag={})", tag, routeError);
+            acker.requeue(tag);
+        }
+    }
+
+    private void acquireWindow() {
+        try {
+            window.acquire(); // janela cheia bloqueia o listener, como uma lane cheia
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the concurrency window", e);
+        }
+    }
+
+    private OrderedAcker ackerFor(Channel channel) {
+        return ackers.computeIfAbsent(channel, ch -> {
+            // tags de entrega só valem no canal onde chegaram
+            ch.addShutdownListener(cause -> ackers.remove(ch));
+            return new OrderedAcker(ch);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+        // o que não terminar fica sem ack e o broker reentrega
+        for (Lane lane : lanes) {
+            lane.thread.join(SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    // ======================================================
+    // LANE (virtual thread + fila limitada)
+    // ======================================================
+    private static final class Lane implements Runnable {
+        private final BlockingQueue<Runnable> mailbox;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Lane(String name, int capacity) {
+            this.mailbox = new ArrayBlockingQueue<>(capacity);
+            this.thread = Thread.ofVirtual().name(name).start(this);
+        }
+
+        void submit(Runnable task) {
+            try {
+                mailbox.put(task); // bloqueia o listener quando a lane está cheia
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while dispatching to " + thread.getName(), e);
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            while (running || !mailbox.isEmpty()) {
+                try {
+                    Runnable task = mailbox.poll(100, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("❌ Unexpected error in {}", thread.getName(), e);
+                }
+            }
+        }
+    }
+
+    // ======================================================
+    // ACK EM ORDEM POR CANAL
+    // ======================================================
+    // Nunca lança: com o canal fechado (AlreadyClosedException/ShutdownSignalException são
+    // RuntimeException) o broker reentrega o que ficou sem ack, e quem chama segue em frente
+    static final class OrderedAcker {
+        private final Channel channel;
+        private final ArrayDeque<Long> pending = new ArrayDeque<>(); // ordem de entrega
+        private final Set<Long> done = new HashSet<>();
+
+        OrderedAcker(Channel channel) {
+            this.channel = channel;
+        }
+
+        synchronized void register(long tag) {
+            pending.addLast(tag);
+        }
+
+        synchronized void complete(long tag) {
+            done.add(tag);
+            ackCompletedPrefix();
+        }
+
+        // O nack individual já liquida a tag no broker: ela sai de pending para nunca ser o alvo
+        // de um basicAck (ack de tag liquidada => PRECONDITION_FAILED e o canal fecha). Um ack
+        // múltiplo posterior passa por cima dela sem problema.
+        synchronized void requeue(long tag) {
+            pending.remove(tag);
+            done.remove(tag);
+            try {
+                channel.basicNack(tag, false, true);
+            } catch (IOException | RuntimeException e) {
+                log.warn("⚠ Nack failed for tag {}: {}", tag, e.getMessage());
+            }
+            ackCompletedPrefix(); // a tag devolvida podia ser a que segurava o prefixo
+        }
+
+        // ack múltiplo até a última tag concluída do prefixo — sempre uma tag ainda pendente no broker
+        private void ackCompletedPrefix() {
+            long ackUpTo = -1;
+            while (!pending.isEmpty() && done.remove(pending.peekFirst())) {
+                ackUpTo = pending.pollFirst();
+            }
+            if (ackUpTo >= 0) {
+                try {
+                    channel.basicAck(ackUpTo, true);
+                } catch (IOException | RuntimeException e) {
+                    // canal fechado: o broker reentrega o que ficou sem ack
+                    log.warn("⚠ Ordered ack failed up to tag {}: {}", ackUpTo, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.wekers.microsb.service.consumers;
+
+import com.rabbitmq.client.Channel;
+import com.wekers.microsb.service.EventDecodeException;
+import com.wekers.microsb.service.IngestMetrics;
+import com.wekers.microsb.service.handlers.ProductBulkHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Modo lote (app.rabbitmq.batch.enabled=true): substitui os listeners por mensagem.
+ * Cada lote vira um único _bulk no Elasticsearch; as falhas por item são republicadas
+ * (retry/DLQ) e o lote inteiro é confirmado com um único basicAck(multiple=true).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.rabbitmq.batch", name = "enabled", havingValue = "true")
+public class ProductBatchListener {
+
+    private final ProductBulkHandler handler;
+    private final ElasticsearchCircuitBreaker breaker;
+    private final IngestMetrics metrics;
+
+    @RabbitListener(
+            queues = "#{@rabbitMQProperties.ingestQueueNames()}",
+            containerFactory = "batchListenerFactory"
+    )
+    public void onBatch(List<Message> batch, Channel channel) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<ProductBulkHandler.Failure> failures = handler.process(batch);
+        metrics.recordPhase("batch", IngestMetrics.Phase.BULK, System.nanoTime() - start);
+
+        // ES indisponível: a mensagem volta à fila (nack individual) em vez de gastar retry;
+        // as demais falhas já são republicadas no retry/DLQ e saem da fila. Corpo que não
+        // decodifica não diz nada sobre o ES: vai para a DLQ sem passar pelo breaker
+        Set<Long> requeued = new HashSet<>();
+        for (ProductBulkHandler.Failure f : failures) {
+            if (!(f.cause() instanceof EventDecodeException) && breaker.onFailure(f.cause())) {
+                long tag = f.message().getMessageProperties().getDeliveryTag();
+                channel.basicNack(tag, false, true);
+                requeued.add(tag);
+            } else {
+                handler.routeFailure(f.message(), f.cause());
+            }
+        }
+        if (failures.size() < batch.size()) {
+            breaker.onSuccess();
+        }
+
+        // um único consumer por canal => as tags do lote são as últimas não confirmadas do canal;
+        // o ack múltiplo passa por cima das já devolvidas, mas a própria tag precisa estar pendente
+        long ackStart = System.nanoTime();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            long tag = batch.get(i).getMessageProperties().getDeliveryTag();
+            if (!requeued.contains(tag)) {
+                channel.basicAck(tag, true);
+                break;
+            }
+        }
+        metrics.recordPhase("batch", IngestMetrics.Phase.ACK, System.nanoTime() - ackStart);
+
+        Set<Message> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        failures.forEach(f -> failed.add(f.message()));
+        for (Message msg : batch) {
+            if (!failed.contains(msg)) {
+                metrics.recordLag(msg.getMessageProperties());
+            }
+        }
+
+        if (!requeued.isEmpty()) {
+            log.warn("⏸ Elasticsearch unavailable — {} of {} messages requeued", requeued.size(), batch.size());
+        }
+    }
+}
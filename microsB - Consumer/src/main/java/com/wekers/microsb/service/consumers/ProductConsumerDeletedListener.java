@@ -1,13 +1,16 @@
 package com.wekers.microsb.service.consumers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import co.elastic.clients.elasticsearch._types.Refresh;
 import com.rabbitmq.client.Channel;
 import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.service.EventDecoder;
 import com.wekers.microsb.service.handlers.ProductDeletedHandler;
+import com.wekers.microsb.service.handlers.RefreshPolicy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -15,28 +18,24 @@ import java.io.IOException;
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.rabbitmq.batch", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class ProductConsumerDeletedListener {
 
-    private final ObjectMapper objectMapper;
+    private final EventDecoder decoder;
+    private final KeyedLaneDispatcher dispatcher;
     private final ProductDeletedHandler handler;
+    private final RefreshPolicy refreshPolicy;
 
     @RabbitListener(
             queues = "${app.rabbitmq.queues.deleted}",
             containerFactory = "manualAckFactory"
     )
     public void onDeleted(Message msg, Channel channel) throws IOException {
-        long tag = msg.getMessageProperties().getDeliveryTag();
-
-        try {
-            ProductDeletedEvent event =
-                    objectMapper.readValue(msg.getBody(), ProductDeletedEvent.class);
-
-            handler.processDelete(event.id().toString());
-            channel.basicAck(tag, false);
-
-        } catch (Exception e) {
-            log.error("❌ Error processing DELETED event", e);
-            handler.retryOrDlq(msg, channel, tag, e);
-        }
+        // mesmo produto => mesma lane (ordem por id); ack em ordem de entrega
+        Refresh refresh = refreshPolicy.resolve(msg.getMessageProperties());
+        dispatcher.dispatch(msg, channel, handler,
+                () -> decoder.decode(msg, ProductDeletedEvent.class),
+                ProductDeletedEvent::id,
+                event -> handler.processDelete(event, refresh));
     }
 }
@@ -0,0 +1,82 @@
+package com.wekers.microsb.service.consumers;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import com.rabbitmq.client.Channel;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import com.wekers.microsb.service.EventDecoder;
+import com.wekers.microsb.service.handlers.ProductCreatedHandler;
+import com.wekers.microsb.service.handlers.ProductDeletedHandler;
+import com.wekers.microsb.service.handlers.ProductUpdatedHandler;
+import com.wekers.microsb.service.handlers.RefreshPolicy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Consome as filas products.partition.{n}.queue, onde created/updated/deleted do mesmo
+ * produto chegam em ordem. O tipo vem no header x-event-type (ou no sufixo da routing key).
+ * Com app.rabbitmq.batch.enabled=true quem consome essas filas é o {@link ProductBatchListener}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("${app.rabbitmq.partitions.enabled:false} and !${app.rabbitmq.batch.enabled:false}")
+public class ProductPartitionListener {
+
+    private final EventDecoder decoder;
+    private final KeyedLaneDispatcher dispatcher;
+    private final ProductCreatedHandler createdHandler;
+    private final ProductUpdatedHandler updatedHandler;
+    private final ProductDeletedHandler deletedHandler;
+    private final RefreshPolicy refreshPolicy;
+
+    @RabbitListener(
+            queues = "#{@rabbitMQProperties.partitions.queueNames()}",
+            containerFactory = "partitionListenerFactory"
+    )
+    public void onEvent(Message msg, Channel channel) throws IOException {
+        String type = EventDecoder.eventType(msg.getMessageProperties());
+        Refresh refresh = refreshPolicy.resolve(msg.getMessageProperties());
+
+        // com lanes, a fila da partição ainda é processada em paralelo entre ids diferentes
+        dispatcher.dispatch(msg, channel, createdHandler,
+                () -> decode(type, msg),
+                ProductPartitionListener::productId,
+                event -> process(event, refresh));
+    }
+
+    private Object decode(String type, Message msg) {
+        return switch (type) {
+            case "CREATED" -> decoder.decode(msg, ProductCreatedEvent.class);
+            case "UPDATED" -> decoder.decode(msg, ProductUpdatedEvent.class);
+            case "DELETED" -> decoder.decode(msg, ProductDeletedEvent.class);
+            default -> throw new IllegalArgumentException("Tipo de evento desconhecido: " + type);
+        };
+    }
+
+    private void process(Object event, Refresh refresh) throws Exception {
+        switch (event) {
+            case ProductCreatedEvent e -> createdHandler.processCreate(e, refresh);
+            case ProductUpdatedEvent e -> updatedHandler.processUpdate(e, refresh);
+            case ProductDeletedEvent e -> deletedHandler.processDelete(e, refresh);
+            default -> throw new IllegalArgumentException("Evento inesperado: " + event);
+        }
+    }
+
+    private static UUID productId(Object event) {
+        return switch (event) {
+            case ProductCreatedEvent e -> e.id();
+            case ProductUpdatedEvent e -> e.id();
+            case ProductDeletedEvent e -> e.id();
+            default -> throw new IllegalArgumentException("Evento inesperado: " + event);
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.wekers.microsb.service.handlers;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.transport.TransportException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.wekers.microsb.service.EventDecodeException;
+import lombok.experimental.UtilityClass;
+import org.apache.http.ConnectionClosedException;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.amqp.AmqpException;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Retry só para o que pode dar certo depois: timeouts, conexão, 408/409/429 e 5xx.
+ * Corpo inválido, 4xx de mapeamento e erros de programação vão direto para a DLQ —
+ * repeti-los só aumenta a carga de um cluster que já está com problemas.
+ */
+@UtilityClass
+public class FailureClassifier {
+
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof EventDecodeException || t instanceof JsonProcessingException) {
+                return false; // corpo que não decodifica hoje não decodifica depois
+            }
+            if (t instanceof ElasticsearchException e) {
+                return isRetryableStatus(e.status());
+            }
+            if (t instanceof IndexingFailureException e) {
+                return isRetryableStatus(e.getStatus());
+            }
+            if (t instanceof ResponseException e) {
+                return isRetryableStatus(e.getResponse().getStatusLine().getStatusCode());
+            }
+            if (t instanceof IOException || t instanceof AmqpException) {
+                return true; // timeout, conexão recusada, transporte
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ES recusando carga (429 / es_rejected_execution_exception): sinal para reduzir a concorrência,
+     * não só para tentar de novo.
+     */
+    public static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ElasticsearchException e) {
+                return e.status() == 429;
+            }
+            if (t instanceof IndexingFailureException e) {
+                return e.getStatus() == 429;
+            }
+            if (t instanceof ResponseException e) {
+                return e.getResponse().getStatusLine().getStatusCode() == 429;
+            }
+            if (t.getMessage() != null && t.getMessage().contains("es_rejected_execution")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ES fora do ar ou sem conseguir atender (conexão, timeout, 502/503/504): a mensagem em si está
+     * certa, então ela volta para a fila e o circuit breaker decide quando parar de consumir.
+     * Só conta falha de transporte do cliente do ES; uma IOException qualquer (ex.: gzip corrompido
+     * no corpo) não pode parar o consumo.
+     */
+    public static boolean isUnavailable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof EventDecodeException || t instanceof JsonProcessingException) {
+                return false;
+            }
+            if (t instanceof ElasticsearchException e) {
+                return isUnavailableStatus(e.status());
+            }
+            if (t instanceof IndexingFailureException e) {
+                return isUnavailableStatus(e.getStatus());
+            }
+            if (t instanceof ResponseException e) {
+                return isUnavailableStatus(e.getResponse().getStatusLine().getStatusCode());
+            }
+            if (t instanceof TransportException e && e.response() != null) {
+                return isUnavailableStatus(e.statusCode());
+            }
+            if (t instanceof SocketException || t instanceof SocketTimeoutException
+                    || t instanceof ConnectionClosedException) {
+                return true; // conexão recusada/derrubada, timeout de socket
+            }
+        }
+        return false;
+    }
+
+    static boolean isUnavailableStatus(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    // 409 aqui é conflito que sobrou do retry_on_conflict (os de versão externa já são ignorados)
+    static boolean isRetryableStatus(int status) {
+        return status == 408 || status == 409 || status == 429 || status >= 500;
+    }
+}
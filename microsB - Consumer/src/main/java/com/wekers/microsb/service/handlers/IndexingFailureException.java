@@ -0,0 +1,18 @@
+package com.wekers.microsb.service.handlers;
+
+import lombok.Getter;
+
+/**
+ * Falha de um item de _bulk (o request em si deu certo). Carrega o status HTTP do item
+ * para a classificação retry x DLQ.
+ */
+@Getter
+public class IndexingFailureException extends RuntimeException {
+
+    private final int status;
+
+    public IndexingFailureException(String id, int status, String reason) {
+        super("Indexing failed for id=" + id + " (status " + status + "): " + reason);
+        this.status = status;
+    }
+}
@@ -1,73 +1,127 @@
 package com.wekers.microsb.service.handlers;
 
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.Channel;
 import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.config.RabbitTopologyConfig;
+import com.wekers.microsb.service.EventDecoder;
+import com.wekers.microsb.service.IngestMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 
 import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 public abstract class ProductBaseHandler {
 
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+    public static final String ORIGINAL_ROUTING_KEY_HEADER = "x-original-routing-key";
+    public static final String FAILURE_HEADER = "x-failure";
+    private static final int MAX_FAILURE_LENGTH = 500;
+
     protected final RabbitTemplate rabbitTemplate;
     protected final RabbitMQProperties properties;
     protected final ObjectMapper objectMapper;
+    protected final IngestMetrics metrics;
 
     protected ProductBaseHandler(RabbitTemplate rabbitTemplate,
                                  RabbitMQProperties properties,
-                                 ObjectMapper objectMapper) {
+                                 ObjectMapper objectMapper,
+                                 IngestMetrics metrics) {
         this.rabbitTemplate = rabbitTemplate;
         this.properties = properties;
         this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    // version_type=external rejeita versões <= à indexada: evento repetido ou fora de ordem
+    protected static boolean isVersionConflict(ElasticsearchException e) {
+        return e.status() == 409;
     }
 
     protected MessageProperties copyHeaders(Message original, boolean keepRetryHeader) {
         MessageProperties props = new MessageProperties();
         props.getHeaders().putAll(original.getMessageProperties().getHeaders());
         if (!keepRetryHeader) {
-            props.getHeaders().remove("x-retry-count");
+            props.getHeaders().remove(RETRY_COUNT_HEADER);
         }
-        props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        // preserva o formato original (JSON ou Smile, com ou sem gzip)
+        String contentType = original.getMessageProperties().getContentType();
+        props.setContentType(contentType != null ? contentType : MessageProperties.CONTENT_TYPE_JSON);
         props.setContentEncoding(original.getMessageProperties().getContentEncoding());
         return props;
     }
 
-    protected void sendToRetry(Message msg, int retry) {
+    protected void sendToRetry(Message msg, int retry, String routingKey) {
+        RabbitMQProperties.RetryConfig config = properties.getRetry();
+        long tier = config.backoffFor(retry);
+        // jitter só para baixo, sorteando uma das filas da faixa (TTL entre 100% e 1 - jitter):
+        // espalha os replays de uma rajada de falhas sem depender de expiração por mensagem
+        int slot = ThreadLocalRandom.current().nextInt(config.slots());
+
         MessageProperties props = copyHeaders(msg, true);
-        props.setHeader("x-retry-count", retry + 1);
-        rabbitTemplate.send(
-                properties.getExchanges().getDlx(),
-                properties.getRoutingKeys().getRetry5s(),
-                new Message(msg.getBody(), props)
-        );
+        props.setHeader(RETRY_COUNT_HEADER, retry + 1);
+        props.setHeader(ORIGINAL_ROUTING_KEY_HEADER, routingKey);
+        props.setHeader(RabbitTopologyConfig.RETRY_TIER_HEADER, RabbitMQProperties.RetryConfig.slotName(tier, slot));
+
+        // publicada com a routing key original: é com ela que a fila de backoff devolve a mensagem
+        rabbitTemplate.send(properties.getExchanges().getRetry(), routingKey, new Message(msg.getBody(), props));
     }
 
-    protected void sendToDlq(Message msg) {
+    protected void sendToDlq(Message msg, String routingKey, Throwable cause) {
+        MessageProperties props = copyHeaders(msg, false);
+        props.setHeader(ORIGINAL_ROUTING_KEY_HEADER, routingKey);
+        props.setHeader(FAILURE_HEADER, abbreviate(String.valueOf(cause)));
         rabbitTemplate.send(
                 properties.getExchanges().getDlx(),
                 properties.getRoutingKeys().getDead(),
-                new Message(msg.getBody(), copyHeaders(msg, false))
+                new Message(msg.getBody(), props)
         );
     }
 
     public void retryOrDlq(Message msg, Channel channel, long tag, Exception e) throws IOException {
         log.error("Error processing message", e);
-        int retry = (int) msg.getMessageProperties()
+        routeFailure(msg, e);
+        channel.basicAck(tag, false);
+    }
+
+    // Republica na faixa de backoff (ou DLQ se terminal / sem tentativas); o ack fica com quem chamou
+    public void routeFailure(Message msg, Throwable cause) {
+        String routingKey = originalRoutingKey(msg);
+        int retry = ((Number) msg.getMessageProperties()
                 .getHeaders()
-                .getOrDefault("x-retry-count", 0);
+                .getOrDefault(RETRY_COUNT_HEADER, 0)).intValue();
+
+        String type = EventDecoder.eventType(msg.getMessageProperties());
 
-        if (retry >= properties.getRetry().getMaxAttempts()) {
-            log.error("☠ Max retries reached — sending to DLQ");
-            sendToDlq(msg);
-            channel.basicAck(tag, false);
+        if (!FailureClassifier.isRetryable(cause)) {
+            log.error("☠ Non-retryable failure — sending to DLQ (rk={}): {}", routingKey, cause.toString());
+            sendToDlq(msg, routingKey, cause);
+            metrics.deadLetter(type, "terminal");
+        } else if (retry >= properties.getRetry().getMaxAttempts()) {
+            log.error("☠ Max retries reached — sending to DLQ (rk={})", routingKey);
+            sendToDlq(msg, routingKey, cause);
+            metrics.deadLetter(type, "exhausted");
         } else {
-            log.warn("🔁 Retry attempt {}/{}", retry + 1, properties.getRetry().getMaxAttempts());
-            sendToRetry(msg, retry);
-            channel.basicAck(tag, false);
+            String tier = RabbitMQProperties.RetryConfig.tierName(properties.getRetry().backoffFor(retry));
+            log.warn("🔁 Retry attempt {}/{} in {} (rk={})", retry + 1, properties.getRetry().getMaxAttempts(),
+                    tier, routingKey);
+            sendToRetry(msg, retry, routingKey);
+            metrics.retry(type, tier);
         }
     }
+
+    // após um replay a routing key recebida já é a original; o header cobre o que vier de fora
+    private static String originalRoutingKey(Message msg) {
+        Object header = msg.getMessageProperties().getHeaders().get(ORIGINAL_ROUTING_KEY_HEADER);
+        return header != null ? header.toString() : msg.getMessageProperties().getReceivedRoutingKey();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= MAX_FAILURE_LENGTH ? text : text.substring(0, MAX_FAILURE_LENGTH) + "...";
+    }
 }
@@ -0,0 +1,356 @@
+package com.wekers.microsb.service.handlers;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.document.ProductDocument;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import com.wekers.microsb.service.EventDecodeException;
+import com.wekers.microsb.service.EventDecoder;
+import com.wekers.microsb.service.IngestMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Indexação em lote: um lote de mensagens vira um único _bulk.
+ *
+ * Os eventos do mesmo id no lote são consolidados em ordem de versão (só o estado final vai
+ * para o ES; deltas seguidos são mesclados campo a campo e o resultado leva a baseVersion do
+ * primeiro). Um delta que não continua a versão anterior do lote (falta um no meio) não é
+ * aplicado: as mensagens do id voltam pelo retry. O resultado de cada item do _bulk
+ * é mapeado de volta às mensagens que o originaram: quem falhou volta para o chamador, que
+ * republica no retry/DLQ. O refresh do _bulk é o mais forte pedido pelas mensagens do lote
+ * ({@link RefreshPolicy}).
+ */
+@Slf4j
+@Component
+public class ProductBulkHandler extends ProductBaseHandler {
+
+    private static final String INDEX = "products_write";
+
+    private final ElasticsearchClient client;
+    private final EventDecoder decoder;
+    private final RefreshPolicy refreshPolicy;
+
+    public ProductBulkHandler(RabbitTemplate rabbitTemplate,
+                              RabbitMQProperties properties,
+                              ObjectMapper objectMapper,
+                              IngestMetrics metrics,
+                              ElasticsearchClient client,
+                              EventDecoder decoder,
+                              RefreshPolicy refreshPolicy) {
+        super(rabbitTemplate, properties, objectMapper, metrics);
+        this.client = client;
+        this.decoder = decoder;
+        this.refreshPolicy = refreshPolicy;
+    }
+
+    // mensagem não aplicada + causa (define retry x DLQ)
+    public record Failure(Message message, Exception cause) {}
+
+    /**
+     * @return mensagens que não foram aplicadas e devem ir para retry/DLQ
+     */
+    public List<Failure> process(List<Message> batch) {
+        long start = System.nanoTime();
+        List<Failure> failed = new ArrayList<>();
+
+        // 1) decodifica e agrupa por id (ordem de chegada)
+        Map<String, List<Decoded>> byId = new LinkedHashMap<>();
+        Refresh refresh = Refresh.False;
+        for (Message msg : batch) {
+            refresh = RefreshPolicy.strongest(refresh, refreshPolicy.resolve(msg.getMessageProperties()));
+            try {
+                Decoded decoded = decode(msg);
+                byId.computeIfAbsent(decoded.id(), k -> new ArrayList<>()).add(decoded);
+            } catch (Exception e) {
+                log.error("❌ Error decoding {} event in batch", EventDecoder.eventType(msg.getMessageProperties()), e);
+                failed.add(new Failure(msg, EventDecodeException.wrap(e)));
+            }
+        }
+
+        // 2) um único estado final por id
+        List<PendingOp> ops = new ArrayList<>(byId.size());
+        byId.forEach((id, events) -> {
+            PendingOp op = PendingOp.fold(id, events);
+            if (op.gap) {
+                metrics.outcome(op.type(), IngestMetrics.Outcome.GAP);
+                log.warn("⏭ Deltas out of order in batch — retrying later: id={}", id);
+                Exception gap = new IndexingFailureException(id, 409, "DELTA_GAP: missing version in batch");
+                op.messages.forEach(m -> failed.add(new Failure(m, gap)));
+            } else {
+                ops.add(op);
+            }
+        });
+
+        // 3) _bulk e mapeamento item -> mensagens (DUP por uniqueKey já foi barrada no Postgres)
+        if (!ops.isEmpty()) {
+            List<BulkOperation> operations = new ArrayList<>(ops.size());
+            for (PendingOp op : ops) {
+                operations.add(op.toOperation());
+            }
+
+            Refresh bulkRefresh = refresh;
+            try {
+                long bulkStart = System.nanoTime();
+                BulkResponse resp = client.bulk(b -> b.refresh(bulkRefresh).operations(operations));
+                metrics.recordWrite("batch", bulkRefresh.jsonValue(), System.nanoTime() - bulkStart);
+                Iterator<BulkResponseItem> items = resp.items().iterator();
+                List<PendingOp> missing = new ArrayList<>();
+                for (PendingOp op : ops) {
+                    BulkResponseItem item = items.next();
+                    if (op.kind == Kind.INDEX && isDeltaNotFound(item)) {
+                        missing.add(op); // UPDATED completo sem documento: vira criação
+                        continue;
+                    }
+                    Exception failure = apply(op, item);
+                    if (failure != null) {
+                        op.messages.forEach(m -> failed.add(new Failure(m, failure)));
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    indexMissing(missing, bulkRefresh, failed);
+                }
+            } catch (Exception e) {
+                log.error("❌ Bulk request failed ({} ops)", ops.size(), e);
+                ops.forEach(op -> op.messages.forEach(m -> failed.add(new Failure(m, e))));
+            }
+        }
+
+        log.info("📦 Bulk indexed: messages={} ops={} failed={} in {} ms",
+                batch.size(), ops.size(), failed.size(), (System.nanoTime() - start) / 1_000_000);
+        return failed;
+    }
+
+    // segundo _bulk só com os UPDATEDs completos sem documento: index com version_type=external
+    // (como no CREATE, respeita o tombstone de um DELETE mais novo enquanto index.gc_deletes o mantém)
+    private void indexMissing(List<PendingOp> missing, Refresh refresh, List<Failure> failed) {
+        List<BulkOperation> operations = missing.stream().map(PendingOp::toIndexOperation).toList();
+        try {
+            long start = System.nanoTime();
+            BulkResponse resp = client.bulk(b -> b.refresh(refresh).operations(operations));
+            metrics.recordWrite("batch", refresh.jsonValue(), System.nanoTime() - start);
+            Iterator<BulkResponseItem> items = resp.items().iterator();
+            for (PendingOp op : missing) {
+                Exception failure = apply(op, items.next());
+                if (failure != null) {
+                    op.messages.forEach(m -> failed.add(new Failure(m, failure)));
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Bulk request for missing documents failed ({} ops)", missing.size(), e);
+            missing.forEach(op -> op.messages.forEach(m -> failed.add(new Failure(m, e))));
+        }
+    }
+
+    // null = aplicado (ou ignorado de propósito); senão a causa da falha do item
+    private Exception apply(PendingOp op, BulkResponseItem write) {
+        if (!isApplied(write)) {
+            if (isDeltaNotFound(write)) {
+                // o CREATE ainda não chegou (ou foi para retry): o delta espera como um gap
+                metrics.outcome(op.type(), IngestMetrics.Outcome.NOT_FOUND);
+                log.warn("⏭ Bulk delta for a missing document — retrying later: id={}", write.id());
+                return new IndexingFailureException(op.id, 409, ProductUpdatedHandler.DELTA_NOT_FOUND);
+            }
+            String gap = ProductUpdatedHandler.deltaGapReason(write.error());
+            if (gap != null) {
+                metrics.outcome(op.type(), IngestMetrics.Outcome.GAP);
+                log.warn("⏭ Bulk delta out of order — retrying later: id={} {}", write.id(), gap);
+                return new IndexingFailureException(op.id, 409, gap); // 409 => retry
+            }
+            String reason = write.error() != null ? write.error().reason() : null;
+            log.warn("⚠ Bulk item failed: {} id={} status={} reason={}",
+                    write.operationType(), write.id(), write.status(), reason);
+            return new IndexingFailureException(op.id, write.status(), reason);
+        }
+        if (write.status() == 409) {
+            metrics.outcome(op.type(), IngestMetrics.Outcome.CONFLICT);
+        } else if (write.status() == 404) {
+            metrics.outcome(op.type(), IngestMetrics.Outcome.NOT_FOUND); // delete de documento que já não existe
+        }
+        return null;
+    }
+
+    // 409 em index/delete = versão externa igual/maior já indexada (evento velho);
+    // 404 em delete = documento já removido. 404 em update (delta) não: vai para retry
+    private static boolean isApplied(BulkResponseItem item) {
+        int status = item.status();
+        if (status < 300) {
+            return true;
+        }
+        return switch (item.operationType()) {
+            case Index, Create -> status == 409;
+            case Delete -> status == 409 || status == 404;
+            case Update -> false;
+        };
+    }
+
+    private static boolean isDeltaNotFound(BulkResponseItem item) {
+        return item.operationType() == OperationType.Update && item.status() == 404;
+    }
+
+    private Decoded decode(Message msg) throws Exception {
+        String type = EventDecoder.eventType(msg.getMessageProperties());
+        return switch (type) {
+            case "CREATED" -> {
+                ProductCreatedEvent e = decoder.decode(msg, ProductCreatedEvent.class);
+                yield new Decoded(e.id().toString(), e.version(), e, msg);
+            }
+            case "UPDATED" -> {
+                ProductUpdatedEvent e = decoder.decode(msg, ProductUpdatedEvent.class);
+                yield new Decoded(e.id().toString(), e.version(), e, msg);
+            }
+            case "DELETED" -> {
+                ProductDeletedEvent e = decoder.decode(msg, ProductDeletedEvent.class);
+                yield new Decoded(e.id().toString(), e.version(), e, msg);
+            }
+            default -> throw new IllegalArgumentException("Tipo de evento desconhecido: " + type);
+        };
+    }
+
+    record Decoded(String id, Long version, Object event, Message message) {}
+
+    // ======================================================
+    // CONSOLIDAÇÃO POR ID
+    // ======================================================
+    enum Kind { CREATE, INDEX, DELTA, DELETE }
+
+    static final class PendingOp {
+        final String id;
+        final List<Message> messages = new ArrayList<>();
+        Kind kind;
+        String name;
+        String description;
+        BigDecimal price;
+        UUID contentHash;
+        Long version;
+        Long baseVersion;   // DELTA: versão sobre a qual o delta consolidado se aplica
+        boolean gap;        // delta do lote não continua a versão anterior
+
+        private PendingOp(String id) {
+            this.id = id;
+        }
+
+        // eventos sem versão (producer antigo) mantêm a ordem de chegada
+        static PendingOp fold(String id, List<Decoded> events) {
+            PendingOp op = new PendingOp(id);
+            events.stream()
+                    .sorted(Comparator.comparing(Decoded::version, Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .forEach(op::apply);
+            return op;
+        }
+
+        void apply(Decoded decoded) {
+            messages.add(decoded.message());
+            switch (decoded.event()) {
+                case ProductCreatedEvent e -> {
+                    kind = Kind.CREATE;
+                    replace(e.name(), e.description(), e.price(), e.contentHash());
+                    version = e.version();
+                }
+                case ProductUpdatedEvent e when e.isFull() || e.version() == null -> {
+                    kind = kind == Kind.CREATE ? Kind.CREATE : Kind.INDEX;
+                    replace(e.name(), e.description(), e.price(), e.contentHash());
+                    version = e.version();
+                }
+                case ProductUpdatedEvent e -> {
+                    if (kind == Kind.DELETE) {
+                        return; // documento já removido neste lote
+                    }
+                    if (version != null && e.version() <= version) {
+                        return; // reentrega de um delta já consolidado
+                    }
+                    if (version != null && e.baseVersion() != null && !e.baseVersion().equals(version)) {
+                        gap = true; // falta um delta entre os dois: mesclar perderia campos
+                    }
+                    if (kind == null) {
+                        kind = Kind.DELTA;
+                        baseVersion = e.baseVersion();
+                    }
+                    // sobre um CREATE/INDEX do lote o delta só completa o documento inteiro
+                    if (e.name() != null) name = e.name();
+                    if (e.description() != null) description = e.description();
+                    if (e.price() != null) price = e.price();
+                    if (e.contentHash() != null) contentHash = e.contentHash();
+                    version = e.version();
+                }
+                case ProductDeletedEvent e -> {
+                    kind = Kind.DELETE;
+                    gap = false;
+                    version = e.version();
+                }
+                default -> throw new IllegalStateException("Evento inesperado: " + decoded.event());
+            }
+        }
+
+        // estado completo: deltas anteriores (mesmo com lacuna) deixam de importar
+        private void replace(String name, String description, BigDecimal price, UUID contentHash) {
+            this.gap = false;
+            this.name = name;
+            this.description = description;
+            this.price = price;
+            this.contentHash = contentHash;
+        }
+
+        // tag das métricas: o tipo do estado final consolidado
+        String type() {
+            return switch (kind) {
+                case CREATE -> "created";
+                case INDEX, DELTA -> "updated";
+                case DELETE -> "deleted";
+            };
+        }
+
+        // INDEX com versão vai pelo script do delta: priceChangedAt só anda se o preço mudou
+        BulkOperation toOperation() {
+            return switch (kind) {
+                case CREATE -> toIndexOperation();
+                case INDEX -> version == null ? toIndexOperation() : toUpdateOperation(null);
+                case DELTA -> toUpdateOperation(baseVersion);
+                case DELETE -> BulkOperation.of(b -> b.delete(d -> {
+                    d.index(INDEX).id(id);
+                    if (version != null) {
+                        d.versionType(VersionType.External).version(version);
+                    }
+                    return d;
+                }));
+            };
+        }
+
+        BulkOperation toIndexOperation() {
+            return ProductCreatedHandler.indexOperation(
+                    ProductDocument.forIndexing(id, name, price, description, contentHash, version));
+        }
+
+        private BulkOperation toUpdateOperation(Long base) {
+            ProductUpdatedEvent delta = new ProductUpdatedEvent(
+                    UUID.fromString(id), name, description, price, contentHash, version, base);
+            Script script = ProductUpdatedHandler.deltaScript(ProductUpdatedHandler.deltaDoc(delta), version, base);
+            return BulkOperation.of(b -> b.<ProductDocument, Object>update(u -> u
+                    .index(INDEX)
+                    .id(id)
+                    .retryOnConflict(ProductUpdatedHandler.RETRY_ON_CONFLICT)
+                    .action(a -> a.script(script))));
+        }
+    }
+}
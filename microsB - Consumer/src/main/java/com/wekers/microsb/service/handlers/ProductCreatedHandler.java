@@ -1,12 +1,16 @@
 package com.wekers.microsb.service.handlers;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch._types.OpType;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.VersionType;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wekers.microsb.config.RabbitMQProperties;
 import com.wekers.microsb.document.ProductDocument;
-import com.wekers.microsb.repository.ProductEsRepository;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.service.IngestMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
@@ -15,46 +19,61 @@ import org.springframework.stereotype.Component;
 @Component
 public class ProductCreatedHandler extends ProductBaseHandler {
 
+    private static final String INDEX = "products_write";
+
     private final ElasticsearchClient client;
-    private final ProductEsRepository repository;
 
     public ProductCreatedHandler(RabbitTemplate rabbitTemplate,
                                  RabbitMQProperties properties,
                                  ObjectMapper objectMapper,
-                                 ElasticsearchClient client,
-                                 ProductEsRepository repository) {
-        super(rabbitTemplate, properties, objectMapper);
+                                 IngestMetrics metrics,
+                                 ElasticsearchClient client) {
+        super(rabbitTemplate, properties, objectMapper, metrics);
         this.client = client;
-        this.repository = repository;
     }
 
-    public void processCreate(ProductDocument doc) throws Exception {
-        // normalizar helpers
-        doc.rebuildUniqueKey();
-        if (doc.getNameSpell() == null) {
-            doc.setNameSpell(doc.getName());
-        }
+    /**
+     * Uma única escrita com version_type=external, sem buscas antes.
+     * DUP por id: o próprio ES rejeita versão igual/antiga (409). DUP por uniqueKey não chega
+     * até aqui: o Postgres (unique_content_hash) já recusou o produto antes do evento existir.
+     */
+    public void processCreate(ProductCreatedEvent event, Refresh refresh) throws Exception {
+        ProductDocument doc = ProductDocument.forIndexing(event.id().toString(), event.name(), event.price(),
+                event.description(), event.contentHash(), event.version());
 
-        // DUP por ID
-        if (repository.existsById(doc.getId())) {
-            log.warn("⚠ CREATE ignored — id already exists: {}", doc.getId());
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            IndexResponse r = client.index(i -> {
+                i.index(INDEX)
+                        .id(doc.getId())
+                        .refresh(refresh)
+                        .document(doc);
+                if (doc.getVersion() != null) {
+                    i.versionType(VersionType.External).version(doc.getVersion());
+                }
+                return i;
+            });
+            metrics.recordWrite("created", refresh.jsonValue(), System.nanoTime() - start);
 
-        // DUP por uniqueKey
-        if (repository.existsByUniqueKey(doc.getUniqueKey())) {
-            log.warn("⚠ CREATE ignored — duplicate uniqueKey: {}", doc.getUniqueKey());
-            return;
+            log.info("🟢 CREATED in ES: id={} result={} version={}", doc.getId(), r.result(), r.version());
+        } catch (ElasticsearchException e) {
+            if (isVersionConflict(e)) {
+                metrics.outcome("created", IngestMetrics.Outcome.CONFLICT);
+                log.warn("⚠ CREATE ignored — id already indexed with same/newer version: {} (v{})",
+                        doc.getId(), event.version());
+                return;
+            }
+            throw e;
         }
+    }
 
-        IndexResponse r = client.index(i -> i
-                .index("products_write")
-                .id(doc.getId())
-                .opType(OpType.Create)
-                .document(doc)
-        );
-
-        log.info("🟢 CREATED in ES: id={} result={} version={}",
-                doc.getId(), r.result(), r.version());
+    static BulkOperation indexOperation(ProductDocument doc) {
+        return BulkOperation.of(b -> b.index(i -> {
+            i.index(INDEX).id(doc.getId()).document(doc);
+            if (doc.getVersion() != null) {
+                i.versionType(VersionType.External).version(doc.getVersion());
+            }
+            return i;
+        }));
     }
 }
@@ -1,9 +1,14 @@
 package com.wekers.microsb.service.handlers;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.VersionType;
 import co.elastic.clients.elasticsearch.core.DeleteResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.service.IngestMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
@@ -17,20 +22,42 @@ public class ProductDeletedHandler extends ProductBaseHandler {
     public ProductDeletedHandler(RabbitTemplate rabbitTemplate,
                                  RabbitMQProperties properties,
                                  ObjectMapper objectMapper,
+                                 IngestMetrics metrics,
                                  ElasticsearchClient client) {
-        super(rabbitTemplate, properties, objectMapper);
+        super(rabbitTemplate, properties, objectMapper, metrics);
         this.client = client;
     }
 
-    public void processDelete(String id) throws Exception {
+    public void processDelete(ProductDeletedEvent event, Refresh refresh) throws Exception {
+        String id = event.id().toString();
+
+        DeleteResponse resp;
+        long start = System.nanoTime();
+        try {
+            // com versão externa o ES guarda um tombstone: CREATE/UPDATE atrasados não ressuscitam o doc.
+            // Só enquanto ele existe (index.gc_deletes, 15m no product-settings.json); depois disso
+            // um evento velho recria o documento
+            resp = client.delete(d -> {
+                d.index("products_write").id(id).refresh(refresh);
+                if (event.version() != null) {
+                    d.versionType(VersionType.External).version(event.version());
+                }
+                return d;
+            });
+            metrics.recordWrite("deleted", refresh.jsonValue(), System.nanoTime() - start);
+        } catch (ElasticsearchException e) {
+            if (isVersionConflict(e)) {
+                metrics.outcome("deleted", IngestMetrics.Outcome.CONFLICT);
+                log.warn("⚠ DELETE ignored — ES already has a newer version: id={} v{}", id, event.version());
+                return;
+            }
+            throw e;
+        }
 
-        DeleteResponse resp = client.delete(d -> d
-                .index("products_write")
-                .id(id)
-        );
         // Como DELETE não deve ser reprocessado (não faz sentido duplicar DEL),
         // enviamos direto a DLQ:
         if ("not_found".equals(resp.result().jsonValue())) {
+            metrics.outcome("deleted", IngestMetrics.Outcome.NOT_FOUND);
             log.warn("⚠ DELETE ignored — not found id={}", id);
             return;
         }
@@ -2,85 +2,248 @@ package com.wekers.microsb.service.handlers;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
-import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.VersionType;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wekers.microsb.config.RabbitMQProperties;
 import com.wekers.microsb.document.ProductDocument;
-import com.wekers.microsb.repository.ProductEsRepository;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import com.wekers.microsb.service.IngestMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
 @Slf4j
 @Component
 public class ProductUpdatedHandler extends ProductBaseHandler {
 
+    // strict_date_time do mapping exige os milissegundos
+    private static final DateTimeFormatter DATE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
+
+    /*
+     * Aplica o delta no _source. _update não aceita version_type=external, então a ordem é
+     * garantida pelo campo "version" do documento: versão igual/antiga => noop.
+     * Cada _update aplicado soma 1 ao _version interno, que assim nunca passa da versão do
+     * Postgres: index/delete com version_type=external continuam sendo aceitos depois.
+     *
+     * detect_noop não vale para scripts, então a comparação é feita aqui: se nenhum campo muda
+     * de valor só "version" avança (sem updatedAt nem campos reanalisados) — o documento precisa
+     * acompanhar a versão do Postgres, senão um evento antigo ainda passaria pela checagem acima.
+     * noop só para versão igual/antiga. priceChangedAt só anda quando o preço muda de fato —
+     * também no UPDATED completo (correções da reconciliação), que passa por este mesmo script.
+     *
+     * O delta foi calculado sobre baseVersion: se o documento está em outra versão (um delta
+     * anterior ainda não chegou, ou foi para retry), aplicá-lo perderia campos. O script falha
+     * com DELTA_GAP e a mensagem volta pelo retry até o anterior ser aplicado (ou cair na DLQ,
+     * e a reconciliação reindexar o produto inteiro).
+     */
+    private static final String APPLY_DELTA_SCRIPT = """
+            long current = ctx._source.version != null ? ctx._source.version : ctx._version;
+            if (current >= params.version) { ctx.op = 'noop'; return; }
+            if (params.baseVersion != null && ((Number) params.baseVersion).longValue() != current) {
+              throw new IllegalArgumentException('DELTA_GAP: document at v' + current
+                  + ', delta built on v' + params.baseVersion);
+            }
+            boolean changed = false;
+            for (entry in params.doc.entrySet()) {
+              def old = ctx._source[entry.getKey()];
+              def value = entry.getValue();
+              boolean same = old instanceof Number && value instanceof Number
+                  ? ((Number) old).doubleValue() == ((Number) value).doubleValue()
+                  : old == value;
+              if (!same) {
+                changed = true;
+                ctx._source[entry.getKey()] = value;
+                if (entry.getKey() == 'price') { ctx._source.priceChangedAt = params.now; }
+              }
+            }
+            ctx._source.version = params.version;
+            if (!changed) { return; }
+            if (!params.doc.containsKey('uniqueKey')
+                && (params.doc.containsKey('name') || params.doc.containsKey('description'))) {
+              // evento sem content hash (producer antigo): chave legada name::description
+              String n = ctx._source.name == null ? '' : ctx._source.name;
+              String d = ctx._source.description == null ? '' : ctx._source.description;
+              ctx._source.uniqueKey = n.trim().toLowerCase() + '::' + d.trim().toLowerCase();
+            }
+            ctx._source.updatedAt = params.now;
+            """;
+
+    static final int RETRY_ON_CONFLICT = 3;
+    private static final String DELTA_GAP = "DELTA_GAP";
+    static final String DELTA_NOT_FOUND = DELTA_GAP + ": document not found, delta needs its base";
+
     private final ElasticsearchClient client;
-    private final ProductEsRepository repository;
 
     public ProductUpdatedHandler(RabbitTemplate rabbitTemplate,
                                  RabbitMQProperties properties,
                                  ObjectMapper objectMapper,
-                                 ElasticsearchClient client,
-                                 ProductEsRepository repository) {
-        super(rabbitTemplate, properties, objectMapper);
+                                 IngestMetrics metrics,
+                                 ElasticsearchClient client) {
+        super(rabbitTemplate, properties, objectMapper, metrics);
         this.client = client;
-        this.repository = repository;
     }
 
-    public void processUpdateOptimistic(ProductDocument incoming) throws Exception {
-        incoming.rebuildUniqueKey();
-        if (incoming.getNameSpell() == null) {
-            incoming.setNameSpell(incoming.getName());
+    public void processUpdate(ProductUpdatedEvent event, Refresh refresh) throws Exception {
+        if (event.version() == null) {
+            indexFull(event, refresh);
+        } else {
+            applyDelta(event, refresh);
         }
+    }
+
+    /**
+     * Escrita "cega" com version_type=external: sem GET prévio.
+     * Se o documento não existe, é criado (antigo fallback UPDATE → CREATE);
+     * se o ES já tem versão igual ou maior, o evento é velho e é descartado.
+     * Usada para eventos sem versão e quando o UPDATED completo não encontra o documento:
+     * documento novo, então priceChangedAt = agora.
+     */
+    private void indexFull(ProductUpdatedEvent event, Refresh refresh) throws Exception {
+        ProductDocument doc = ProductDocument.forIndexing(event.id().toString(), event.name(), event.price(),
+                event.description(), event.contentHash(), event.version());
+
+        long start = System.nanoTime();
+        try {
+            IndexResponse resp = client.index(i -> {
+                i.index("products_write")
+                        .id(doc.getId())
+                        .refresh(refresh)
+                        .document(doc);
+                if (event.version() != null) {
+                    i.versionType(VersionType.External).version(event.version());
+                }
+                return i;
+            });
+            metrics.recordWrite("updated", refresh.jsonValue(), System.nanoTime() - start);
+
+            log.info("🟢 UPDATED OK: id={} result={} version={}", doc.getId(), resp.result(), resp.version());
+        } catch (ElasticsearchException e) {
+            if (isVersionConflict(e)) {
+                metrics.outcome("updated", IngestMetrics.Outcome.CONFLICT);
+                log.warn("🔒 Stale UPDATE ignored — ES already has a newer version: id={} v{}",
+                        doc.getId(), event.version());
+                return;
+            }
+            throw e;
+        }
+    }
 
-        GetResponse<ProductDocument> current = client.get(
-                g -> g.index("products_write").id(incoming.getId()),
-                ProductDocument.class
-        );
+    /**
+     * _update parcial só com os campos alterados. Campos de texto só são reanalisados quando
+     * mudam; um update só de preço não mexe em name/description.
+     * O UPDATED completo vai pelo mesmo script (sem checagem de base): só o que mudou é gravado.
+     * Se o documento não existe, o completo custa duas requisições: o _update (404) e depois o
+     * index externo de {@link #indexFull}. Um upsert faria em uma só, mas não respeita o tombstone
+     * de delete e ressuscitaria produtos apagados. O delta sem documento vai para retry (DELTA_NOT_FOUND).
+     */
+    private void applyDelta(ProductUpdatedEvent event, Refresh refresh) throws Exception {
+        String id = event.id().toString();
+        Map<String, Object> doc = deltaDoc(event);
+        Script script = deltaScript(doc, event.version(), baseVersionOf(event));
 
-        if (!current.found()) {
-            log.warn("⚠ UPDATE: document not found, fallback to CREATE");
+        long start = System.nanoTime();
+        try {
+            UpdateResponse<ProductDocument> resp = client.update(u -> u
+                            .index("products_write")
+                            .id(id)
+                            .refresh(refresh)
+                            .retryOnConflict(RETRY_ON_CONFLICT)
+                            .script(script),
+                    ProductDocument.class);
+            metrics.recordWrite("updated", refresh.jsonValue(), System.nanoTime() - start);
 
-            IndexResponse created = client.index(i -> i
-                    .index("products_write")
-                    .id(incoming.getId())
-                    .document(incoming)
-            );
+            if (resp.result() == Result.NoOp) {
+                log.debug("⚪ UPDATE noop (stale version): id={} v{}", id, event.version());
+            } else {
+                log.info("🟢 UPDATED (delta {}) : id={} result={} v{}", doc.keySet(), id, resp.result(), event.version());
+            }
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404 && event.isFull()) {
+                indexFull(event, refresh);
+                return;
+            }
+            if (e.status() == 404) {
+                metrics.outcome("updated", IngestMetrics.Outcome.NOT_FOUND);
+                // sem o documento base não há como aplicar o delta: o CREATE ainda não chegou
+                // (ou foi para retry). Espera como um gap; só cai na DLQ depois de maxAttempts
+                log.warn("⏭ Delta UPDATE for a missing document — retrying later: id={} v{}", id, event.version());
+                throw new IndexingFailureException(id, 409, DELTA_NOT_FOUND);
+            }
+            String gap = deltaGapReason(e.error());
+            if (gap != null) {
+                metrics.outcome("updated", IngestMetrics.Outcome.GAP);
+                log.warn("⏭ Delta UPDATE out of order — retrying later: id={} v{} base v{}",
+                        id, event.version(), event.baseVersion());
+                // 409: conflito de ordem, o FailureClassifier manda para retry e não direto para a DLQ
+                throw new IndexingFailureException(id, 409, gap);
+            }
+            throw e;
+        }
+    }
 
-            log.info("🟢 CREATED from UPDATE fallback: id={} version={}",
-                    incoming.getId(), created.version());
-            return;
+    // campos do _source alterados pelo delta (texto reanalisado só quando muda)
+    static Map<String, Object> deltaDoc(ProductUpdatedEvent event) {
+        Map<String, Object> doc = new HashMap<>();
+        if (event.name() != null) {
+            doc.put("name", event.name());
+            doc.put("nameSpell", event.name());
+            doc.put("nameSpellClean", ProductDocument.cleanNameForSpellCheck(event.name()));
+        }
+        if (event.description() != null) {
+            doc.put("description", event.description());
         }
+        if (event.price() != null) {
+            doc.put("price", event.price());
+        }
+        if (event.contentHash() != null) {
+            doc.put("uniqueKey", event.contentHash().toString());
+        }
+        return doc;
+    }
 
-        ProductDocument existing = current.source();
-        // aplica mudanças
-        existing.setName(incoming.getName());
-        existing.setDescription(incoming.getDescription());
-        existing.setPrice(incoming.getPrice());
-        existing.rebuildUniqueKey();
+    // o evento completo não depende do estado anterior (a baseVersion de uma coalescência é ignorada)
+    static Long baseVersionOf(ProductUpdatedEvent event) {
+        return event.isFull() ? null : event.baseVersion();
+    }
 
-        long seqNo = current.seqNo();
-        long primaryTerm = current.primaryTerm();
+    static Script deltaScript(Map<String, Object> doc, long version, Long baseVersion) {
+        Map<String, JsonData> params = new HashMap<>();
+        params.put("doc", JsonData.of(doc));
+        params.put("version", JsonData.of(version));
+        params.put("now", JsonData.of(DATE_TIME.format(Instant.now())));
+        if (baseVersion != null) {
+            params.put("baseVersion", JsonData.of(baseVersion)); // ausente => delta de producer antigo, sem checagem
+        }
+        return Script.of(s -> s.inline(i -> i
+                .lang("painless")
+                .source(APPLY_DELTA_SCRIPT)
+                .params(params)));
+    }
 
-        try {
-            IndexResponse updateResp = client.index(i -> i
-                    .index("products_write")
-                    .id(existing.getId())
-                    .ifSeqNo(seqNo)
-                    .ifPrimaryTerm(primaryTerm)
-                    .document(existing)
-            );
-
-            log.info("🟢 UPDATED OK: id={} version={}", existing.getId(), updateResp.version());
-        } catch (ElasticsearchException lockEx) {
-            if (lockEx.getMessage() != null
-                    && lockEx.getMessage().contains("version_conflict_engine_exception")) {
-                log.warn("🔒 Version conflict — another update won, letting retry policy handle");
-                throw lockEx;
+    /**
+     * Motivo do DELTA_GAP lançado pelo script (o ES o embrulha em script_exception /
+     * illegal_argument_exception), ou null se a falha for outra.
+     */
+    static String deltaGapReason(ErrorCause error) {
+        for (ErrorCause cause = error; cause != null; cause = cause.causedBy()) {
+            if (cause.reason() != null && cause.reason().contains(DELTA_GAP)) {
+                return cause.reason();
             }
-            throw lockEx;
         }
+        return null;
     }
 }
@@ -0,0 +1,82 @@
+package com.wekers.microsb.service.handlers;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import com.wekers.microsb.config.RefreshProperties;
+import com.wekers.microsb.service.EventDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Política de refresh de cada escrita no índice: o header da mensagem (x-refresh) vale mais que
+ * a política do tipo de evento, que vale mais que o default. O producer não envia esse header (o
+ * outbox não tem onde guardá-lo); na prática quem decide é by-type.
+ *
+ * false (padrão): a escrita fica visível no próximo refresh_interval — é o que carga em massa quer.
+ * wait_for: a escrita só retorna quando já aparece na busca (edição interativa), sem forçar refresh.
+ * true: força um refresh do shard a cada escrita; caro, só para casos pontuais.
+ */
+@Slf4j
+@Component
+public class RefreshPolicy {
+
+    private final String header;
+    private final Refresh defaultPolicy;
+    private final Map<String, Refresh> byType = new HashMap<>();
+
+    public RefreshPolicy(RefreshProperties properties) {
+        this.header = properties.getHeader();
+        this.defaultPolicy = parse(properties.getDefaultPolicy());
+        if (defaultPolicy == null) {
+            throw new IllegalArgumentException("app.elasticsearch.refresh.default-policy inválida: "
+                    + properties.getDefaultPolicy());
+        }
+        properties.getByType().forEach((type, value) -> {
+            Refresh refresh = parse(value);
+            if (refresh == null) {
+                throw new IllegalArgumentException("app.elasticsearch.refresh.by-type." + type + " inválida: " + value);
+            }
+            byType.put(type.toUpperCase(Locale.ROOT), refresh);
+        });
+        log.info("🔄 Refresh policy: default={} byType={} header={}", defaultPolicy.jsonValue(), byType, header);
+    }
+
+    public Refresh resolve(MessageProperties props) {
+        Object value = props.getHeaders().get(header);
+        if (value != null) {
+            Refresh requested = parse(value.toString());
+            if (requested != null) {
+                return requested;
+            }
+            log.debug("⚠ Ignoring invalid {} header: {}", header, value);
+        }
+        return byType.getOrDefault(EventDecoder.eventType(props), defaultPolicy);
+    }
+
+    // um _bulk tem um único refresh: vale o mais forte pedido pelas mensagens do lote
+    public static Refresh strongest(Refresh a, Refresh b) {
+        return rank(a) >= rank(b) ? a : b;
+    }
+
+    private static int rank(Refresh refresh) {
+        return switch (refresh) {
+            case False -> 0;
+            case WaitFor -> 1;
+            case True -> 2;
+        };
+    }
+
+    private static Refresh parse(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT).replace('-', '_');
+        for (Refresh refresh : Refresh.values()) {
+            if (refresh.jsonValue().equals(normalized)) {
+                return refresh;
+            }
+        }
+        return null;
+    }
+}
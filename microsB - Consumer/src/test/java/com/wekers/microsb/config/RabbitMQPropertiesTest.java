@@ -0,0 +1,91 @@
+package com.wekers.microsb.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Faixas de retry: cada tentativa cai numa faixa (a última se repete), cada faixa tem jitterSlots
+ * filas com TTL de 100% a (1 - jitter), e o header x-retry-tier aponta para uma delas.
+ * O caminho de retry inteiro cabe dentro do tombstone de DELETE do índice (index.gc_deletes).
+ */
+class RabbitMQPropertiesTest {
+
+    private final RabbitMQProperties.RetryConfig retry = new RabbitMQProperties.RetryConfig();
+
+    @Test
+    void lastTierRepeatsOnceAttemptsOutgrowTheList() {
+        assertThat(retry.backoffFor(0)).isEqualTo(1_000L);
+        assertThat(retry.backoffFor(3)).isEqualTo(300_000L);
+        assertThat(retry.backoffFor(10)).isEqualTo(300_000L);
+    }
+
+    @Test
+    void slotDelaysSpreadDownwardWithinTheJitter() {
+        assertThat(retry.slots()).isEqualTo(4);
+        assertThat(retry.slotDelay(5_000, 0)).isEqualTo(5_000L);
+        assertThat(retry.slotDelay(5_000, 3)).isEqualTo(4_000L);
+        assertThat(retry.slotDelay(5_000, 1)).isBetween(4_000L, 5_000L);
+    }
+
+    @Test
+    void withoutJitterEachTierIsASingleQueue() {
+        retry.setJitter(0);
+
+        assertThat(retry.slots()).isEqualTo(1);
+        assertThat(retry.slotDelay(30_000, 0)).isEqualTo(30_000L);
+        assertThat(retry.queueNames()).containsExactly(
+                "products.retry.backoff.1s.queue",
+                "products.retry.backoff.5s.queue",
+                "products.retry.backoff.30s.queue",
+                "products.retry.backoff.5m.queue");
+    }
+
+    @Test
+    void slotNameMatchesTheQueueItRoutesTo() {
+        assertThat(RabbitMQProperties.RetryConfig.slotName(5_000, 0)).isEqualTo("5s");
+        assertThat(RabbitMQProperties.RetryConfig.slotName(5_000, 2)).isEqualTo("5s.j2");
+        assertThat(RabbitMQProperties.RetryConfig.tierName(1_500)).isEqualTo("1500ms");
+        assertThat(retry.queueName(300_000, 1)).isEqualTo("products.retry.backoff.5m.j1.queue");
+
+        retry.setBackoffMs(List.of(2_000L));
+        assertThat(retry.queueNames()).containsExactly(
+                "products.retry.backoff.2s.queue",
+                "products.retry.backoff.2s.j1.queue",
+                "products.retry.backoff.2s.j2.queue",
+                "products.retry.backoff.2s.j3.queue");
+    }
+
+    @Test
+    void deleteTombstoneOutlivesTheWholeRetryPath() throws Exception {
+        Duration gcDeletes;
+        try (InputStream in = new ClassPathResource("elasticsearch/product-settings.json").getInputStream()) {
+            JsonNode settings = new ObjectMapper().readTree(in);
+            gcDeletes = DurationStyle.detectAndParse(settings.at("/settings/index/gc_deletes").asText());
+        }
+
+        List<PropertySource<?>> local = new YamlPropertySourceLoader()
+                .load("application-local", new ClassPathResource("application-local.yml"));
+        RabbitMQProperties.RetryConfig configured = new Binder(ConfigurationPropertySources.from(local))
+                .bind("app.rabbitmq.retry", RabbitMQProperties.RetryConfig.class)
+                .orElseThrow();
+
+        assertThat(retry.retryWindowMs()).isEqualTo(336_000L); // 1s + 5s + 30s + 5m
+        // folga de 2x: pausa do circuit breaker e backlog das lanes atrasam o replay além das faixas
+        for (RabbitMQProperties.RetryConfig config : List.of(retry, configured)) {
+            assertThat(gcDeletes.toMillis()).isGreaterThanOrEqualTo(2 * config.retryWindowMs());
+        }
+    }
+}
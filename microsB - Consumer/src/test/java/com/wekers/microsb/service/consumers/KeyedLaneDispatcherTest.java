@@ -0,0 +1,134 @@
+package com.wekers.microsb.service.consumers;
+
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.service.IngestMetrics;
+import com.wekers.microsb.service.handlers.ProductBaseHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ack em ordem de entrega por canal e janela de concorrência sempre devolvida.
+ */
+class KeyedLaneDispatcherTest {
+
+    private final Channel channel = mock(Channel.class);
+
+    // ======================================================
+    // OrderedAcker
+    // ======================================================
+
+    @Test
+    void acksTheCompletedPrefixOnlyOnceTheOldestTagIsDone() throws Exception {
+        KeyedLaneDispatcher.OrderedAcker acker = ackerWith(1, 2, 3);
+
+        acker.complete(2);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+        acker.complete(1);
+        verify(channel).basicAck(2, true);
+
+        acker.complete(3);
+        verify(channel).basicAck(3, true);
+    }
+
+    @Test
+    void requeueOfTheOldestTagReleasesTheCompletedPrefix() throws Exception {
+        KeyedLaneDispatcher.OrderedAcker acker = ackerWith(1, 2, 3);
+        acker.complete(2);
+        acker.complete(3);
+
+        acker.requeue(1);
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).basicNack(1, false, true);
+        order.verify(channel).basicAck(3, true);
+    }
+
+    @Test
+    void requeuedTagIsNeverTheTargetOfAMultipleAck() throws Exception {
+        KeyedLaneDispatcher.OrderedAcker acker = ackerWith(1, 2, 3);
+
+        acker.requeue(3);
+        acker.complete(1);
+        acker.complete(2);
+
+        verify(channel).basicAck(2, true);
+        verify(channel, never()).basicAck(3, true);
+    }
+
+    @Test
+    void closedChannelNeverEscapesTheAcker() throws Exception {
+        AlreadyClosedException closed = new AlreadyClosedException(new ShutdownSignalException(false, true, null, null));
+        doThrow(closed).when(channel).basicAck(anyLong(), anyBoolean());
+        doThrow(closed).when(channel).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        KeyedLaneDispatcher.OrderedAcker acker = ackerWith(1, 2);
+
+        assertThatCode(() -> {
+            acker.complete(1);
+            acker.requeue(2);
+        }).doesNotThrowAnyException();
+    }
+
+    // ======================================================
+    // Janela de concorrência
+    // ======================================================
+
+    @Test
+    void circuitOpenWithAClosedChannelStillReleasesTheWindow() throws Exception {
+        RabbitMQProperties properties = new RabbitMQProperties();
+        properties.getLanes().setEnabled(true);
+        properties.getLanes().setCount(1);
+        properties.getAdaptive().setEnabled(true);
+        ConcurrencyWindow window = new ConcurrencyWindow(properties);
+        ElasticsearchCircuitBreaker breaker = mock(ElasticsearchCircuitBreaker.class);
+        when(breaker.getState()).thenReturn(ElasticsearchCircuitBreaker.State.OPEN);
+        doThrow(new AlreadyClosedException(new ShutdownSignalException(false, true, null, null)))
+                .when(channel).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        ProductBaseHandler handler = mock(ProductBaseHandler.class);
+
+        KeyedLaneDispatcher dispatcher = new KeyedLaneDispatcher(properties, window, new IngestStats(), breaker,
+                new IngestMetrics(new SimpleMeterRegistry()));
+        dispatcher.dispatch(message(1), channel, handler,
+                UUID::randomUUID, id -> id, id -> { throw new AssertionError("ES não pode ser chamado"); });
+        dispatcher.shutdown(); // espera a lane esvaziar
+
+        verify(channel).basicNack(1, false, true);
+        assertThat(window.getInFlight()).isZero();
+        verifyNoInteractions(handler);
+    }
+
+    private KeyedLaneDispatcher.OrderedAcker ackerWith(long... tags) {
+        KeyedLaneDispatcher.OrderedAcker acker = new KeyedLaneDispatcher.OrderedAcker(channel);
+        for (long tag : tags) {
+            acker.register(tag);
+        }
+        return acker;
+    }
+
+    private static Message message(long tag) {
+        MessageProperties props = new MessageProperties();
+        props.setDeliveryTag(tag);
+        props.setReceivedRoutingKey("products.updated");
+        return new Message(new byte[0], props);
+    }
+}
@@ -0,0 +1,58 @@
+package com.wekers.microsb.service.handlers;
+
+import com.wekers.microsb.service.EventDecodeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.zip.ZipException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Só falha de transporte do ES conta como indisponibilidade; corpo corrompido vai para a DLQ.
+ */
+class FailureClassifierTest {
+
+    @Test
+    void corruptGzipBodyIsTerminalAndNeverUnavailable() {
+        Exception decode = EventDecodeException.wrap(new ZipException("Not in GZIP format"));
+
+        assertThat(FailureClassifier.isUnavailable(decode)).isFalse();
+        assertThat(FailureClassifier.isRetryable(decode)).isFalse();
+    }
+
+    @Test
+    void ioExceptionOutsideTheTransportIsNotAnOutage() {
+        assertThat(FailureClassifier.isUnavailable(new EOFException("Unexpected end of ZLIB input stream"))).isFalse();
+        assertThat(FailureClassifier.isUnavailable(new IOException("disk full"))).isFalse();
+    }
+
+    @Test
+    void connectionAndSocketTimeoutsAreOutagesEvenWhenWrapped() {
+        assertThat(FailureClassifier.isUnavailable(new ConnectException("Connection refused"))).isTrue();
+        assertThat(FailureClassifier.isUnavailable(
+                new IllegalStateException("bulk failed", new SocketTimeoutException("Read timed out")))).isTrue();
+    }
+
+    @Test
+    void itemStatusDecidesBetweenOutageRetryAndDlq() {
+        assertThat(FailureClassifier.isUnavailable(new IndexingFailureException("p1", 503, "unavailable"))).isTrue();
+
+        IndexingFailureException gap = new IndexingFailureException("p1", 409, "DELTA_GAP");
+        assertThat(FailureClassifier.isUnavailable(gap)).isFalse();
+        assertThat(FailureClassifier.isRetryable(gap)).isTrue();
+
+        assertThat(FailureClassifier.isRetryable(new IndexingFailureException("p1", 400, "mapper_parsing_exception")))
+                .isFalse();
+    }
+
+    @Test
+    void overloadIsDetectedByStatusOrRejectedExecution() {
+        assertThat(FailureClassifier.isOverload(new IndexingFailureException("p1", 429, "too many requests"))).isTrue();
+        assertThat(FailureClassifier.isOverload(new RuntimeException("es_rejected_execution_exception"))).isTrue();
+        assertThat(FailureClassifier.isOverload(new IndexingFailureException("p1", 503, "unavailable"))).isFalse();
+    }
+}
@@ -0,0 +1,139 @@
+package com.wekers.microsb.service.handlers;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.wekers.microsb.dto.ProductCreatedEvent;
+import com.wekers.microsb.dto.ProductDeletedEvent;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import com.wekers.microsb.service.handlers.ProductBulkHandler.Decoded;
+import com.wekers.microsb.service.handlers.ProductBulkHandler.Kind;
+import com.wekers.microsb.service.handlers.ProductBulkHandler.PendingOp;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Consolidação por id do lote: lacunas entre deltas, DELETE depois de delta, CREATE + delta
+ * como documento inteiro e reentregas.
+ */
+class ProductBulkHandlerTest {
+
+    private static final UUID ID = UUID.randomUUID();
+
+    @Test
+    void deltaThatDoesNotContinueThePreviousVersionIsAGap() {
+        PendingOp op = fold(delta(2L, 1L, "10.00"), delta(4L, 3L, "12.00"));
+
+        assertThat(op.gap).isTrue();
+        assertThat(op.messages).hasSize(2);
+    }
+
+    @Test
+    void consecutiveDeltasMergeOnTheFirstBaseVersion() {
+        PendingOp op = fold(delta(3L, 2L, "12.00"), nameDelta(4L, 3L, "Mouse"), delta(2L, 1L, "10.00"));
+
+        assertThat(op.gap).isFalse();
+        assertThat(op.kind).isEqualTo(Kind.DELTA);
+        assertThat(op.baseVersion).isEqualTo(1L);
+        assertThat(op.version).isEqualTo(4L);
+        assertThat(op.price).isEqualByComparingTo("12.00");
+        assertThat(op.name).isEqualTo("Mouse");
+        assertThat(op.toOperation().isUpdate()).isTrue();
+    }
+
+    @Test
+    void deleteAfterADeltaWinsAndClearsTheGap() {
+        PendingOp op = fold(delta(2L, 1L, "10.00"), delta(4L, 3L, "12.00"), deleted(5L));
+
+        assertThat(op.kind).isEqualTo(Kind.DELETE);
+        assertThat(op.gap).isFalse();
+        assertThat(op.version).isEqualTo(5L);
+        assertThat(op.messages).hasSize(3);
+
+        BulkOperation operation = op.toOperation();
+        assertThat(operation.isDelete()).isTrue();
+        assertThat(operation.delete().version()).isEqualTo(5L);
+    }
+
+    @Test
+    void createFollowedByADeltaBecomesAFullIndex() {
+        PendingOp op = fold(created(1L), delta(2L, 1L, "15.00"));
+
+        assertThat(op.kind).isEqualTo(Kind.CREATE);
+        assertThat(op.gap).isFalse();
+        assertThat(op.name).isEqualTo("Teclado");
+        assertThat(op.price).isEqualByComparingTo("15.00");
+
+        BulkOperation operation = op.toOperation();
+        assertThat(operation.isIndex()).isTrue();
+        assertThat(operation.index().version()).isEqualTo(2L);
+    }
+
+    @Test
+    void fullUpdateOfAnIndexedDocumentGoesThroughTheScriptWithoutBase() {
+        PendingOp op = fold(delta(2L, 1L, "10.00"), fullUpdate(3L));
+
+        assertThat(op.kind).isEqualTo(Kind.INDEX);
+
+        BulkOperation operation = op.toOperation();
+        assertThat(operation.isUpdate()).isTrue();
+        assertThat(operation.update().action().script().inline().params()).doesNotContainKey("baseVersion");
+        assertThat(op.toIndexOperation().index().version()).isEqualTo(3L);
+    }
+
+    @Test
+    void redeliveredDeltaIsSkippedButItsMessageIsKept() {
+        PendingOp op = fold(delta(2L, 1L, "10.00"), delta(2L, 1L, "10.00"));
+
+        assertThat(op.gap).isFalse();
+        assertThat(op.baseVersion).isEqualTo(1L);
+        assertThat(op.version).isEqualTo(2L);
+        assertThat(op.messages).hasSize(2);
+    }
+
+    @Test
+    void deltaAfterADeleteInTheSameBatchIsIgnored() {
+        PendingOp op = fold(created(1L), deleted(2L), delta(3L, 2L, "10.00"));
+
+        assertThat(op.kind).isEqualTo(Kind.DELETE);
+        assertThat(op.version).isEqualTo(2L);
+        assertThat(op.messages).hasSize(3);
+    }
+
+    private static PendingOp fold(Decoded... events) {
+        return PendingOp.fold(ID.toString(), List.of(events));
+    }
+
+    private static Decoded created(long version) {
+        return decoded(version, new ProductCreatedEvent(ID, "Teclado", "Mecânico", new BigDecimal("10.00"),
+                UUID.randomUUID(), version));
+    }
+
+    private static Decoded delta(long version, long baseVersion, String price) {
+        return decoded(version, new ProductUpdatedEvent(ID, null, null, new BigDecimal(price), null,
+                version, baseVersion));
+    }
+
+    private static Decoded fullUpdate(long version) {
+        return decoded(version, new ProductUpdatedEvent(ID, "Teclado", "Mecânico", new BigDecimal("12.00"),
+                UUID.randomUUID(), version, null));
+    }
+
+    private static Decoded nameDelta(long version, long baseVersion, String name) {
+        return decoded(version, new ProductUpdatedEvent(ID, name, null, null, UUID.randomUUID(),
+                version, baseVersion));
+    }
+
+    private static Decoded deleted(long version) {
+        return decoded(version, new ProductDeletedEvent(ID, "Teclado", "Mecânico", version));
+    }
+
+    private static Decoded decoded(long version, Object event) {
+        return new Decoded(ID.toString(), version, event, new Message(new byte[0], new MessageProperties()));
+    }
+}
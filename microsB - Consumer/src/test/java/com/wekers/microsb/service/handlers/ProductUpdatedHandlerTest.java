@@ -0,0 +1,122 @@
+package com.wekers.microsb.service.handlers;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Script;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wekers.microsb.config.RabbitMQProperties;
+import com.wekers.microsb.document.ProductDocument;
+import com.wekers.microsb.dto.ProductUpdatedEvent;
+import com.wekers.microsb.service.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Delta que não encontra a base (gap de versão ou documento ausente) volta pelo retry com 409.
+ */
+class ProductUpdatedHandlerTest {
+
+    private final ElasticsearchClient client = mock(ElasticsearchClient.class);
+    private final ProductUpdatedHandler handler = new ProductUpdatedHandler(mock(RabbitTemplate.class),
+            new RabbitMQProperties(), new ObjectMapper(), new IngestMetrics(new SimpleMeterRegistry()), client);
+
+    @Test
+    void deltaForAMissingDocumentIsRetriedLikeAGap() throws Exception {
+        failUpdateWith(404, ErrorCause.of(e -> e.type("document_missing_exception").reason("[p1]: document missing")));
+
+        assertThatThrownBy(() -> handler.processUpdate(priceDelta(3L, 2L), Refresh.False))
+                .isInstanceOfSatisfying(IndexingFailureException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(409);
+                    assertThat(FailureClassifier.isRetryable(e)).isTrue();
+                    assertThat(FailureClassifier.isUnavailable(e)).isFalse();
+                });
+    }
+
+    @Test
+    void deltaGapFromTheScriptIsRetried() throws Exception {
+        failUpdateWith(400, ErrorCause.of(e -> e.type("illegal_argument_exception")
+                .reason("failed to execute script")
+                .causedBy(c -> c.type("script_exception")
+                        .reason("runtime error")
+                        .causedBy(g -> g.type("illegal_argument_exception")
+                                .reason("DELTA_GAP: document at v1, delta built on v2")))));
+
+        assertThatThrownBy(() -> handler.processUpdate(priceDelta(3L, 2L), Refresh.False))
+                .isInstanceOfSatisfying(IndexingFailureException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(409))
+                .hasMessageContaining("DELTA_GAP: document at v1");
+    }
+
+    @Test
+    void otherScriptFailuresAreNotGaps() {
+        ErrorCause error = ErrorCause.of(e -> e.type("mapper_parsing_exception").reason("failed to parse [price]"));
+
+        assertThat(ProductUpdatedHandler.deltaGapReason(error)).isNull();
+    }
+
+    @Test
+    void deltaScriptOnlyChecksTheBaseWhenTheEventCarriesIt() {
+        Map<String, Object> doc = ProductUpdatedHandler.deltaDoc(priceDelta(3L, 2L));
+
+        Script withBase = ProductUpdatedHandler.deltaScript(doc, 3L, 2L);
+        Script legacy = ProductUpdatedHandler.deltaScript(doc, 3L, null);
+
+        assertThat(doc).containsOnlyKeys("price");
+        assertThat(withBase.inline().params()).containsKey("baseVersion");
+        assertThat(legacy.inline().params()).doesNotContainKey("baseVersion");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullUpdateForAMissingDocumentFallsBackToAVersionedIndex() throws Exception {
+        failUpdateWith(404, ErrorCause.of(e -> e.type("document_missing_exception").reason("[p1]: document missing")));
+        when(client.index(any(Function.class))).thenThrow(new ElasticsearchException("index",
+                ErrorResponse.of(r -> r.status(409).error(ErrorCause.of(e -> e
+                        .type("version_conflict_engine_exception").reason("version conflict"))))));
+
+        handler.processUpdate(fullUpdate(3L, null), Refresh.False);
+
+        verify(client).update(any(Function.class), eq(ProductDocument.class));
+        verify(client).index(any(Function.class));
+    }
+
+    @Test
+    void fullUpdateIgnoresTheBaseVersionOfACoalescedDelta() {
+        assertThat(ProductUpdatedHandler.baseVersionOf(fullUpdate(3L, 2L))).isNull();
+        assertThat(ProductUpdatedHandler.baseVersionOf(priceDelta(3L, 2L))).isEqualTo(2L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void failUpdateWith(int status, ErrorCause error) throws Exception {
+        ElasticsearchException failure = new ElasticsearchException("update",
+                ErrorResponse.of(r -> r.status(status).error(error)));
+        when(client.update(any(Function.class), eq(ProductDocument.class))).thenThrow(failure);
+    }
+
+    private static ProductUpdatedEvent fullUpdate(long version, Long baseVersion) {
+        return new ProductUpdatedEvent(UUID.randomUUID(), "Mouse", "Sem fio", new BigDecimal("9.90"),
+                UUID.randomUUID(), version, baseVersion);
+    }
+
+    private static ProductUpdatedEvent priceDelta(long version, long baseVersion) {
+        return new ProductUpdatedEvent(UUID.randomUUID(), null, null, new BigDecimal("9.90"), null,
+                version, baseVersion);
+    }
+}
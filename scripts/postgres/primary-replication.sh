@@ -0,0 +1,11 @@
+#!/bin/bash
+# Executado pelo entrypoint do postgres só na criação do volume (docker-entrypoint-initdb.d).
+# Prepara o primário para a réplica de leitura (serviço postgres-replica, profile "replica").
+set -e
+
+psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" <<-SQL
+    CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD 'replicator';
+    SELECT pg_create_physical_replication_slot('replica_1');
+SQL
+
+echo "host replication replicator all scram-sha-256" >> "$PGDATA/pg_hba.conf"